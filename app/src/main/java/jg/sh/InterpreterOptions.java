@@ -113,9 +113,64 @@ public class InterpreterOptions {
      * 
      * The default is OFF
      */
-    LOG_LEVEL;
+    LOG_LEVEL,
+    
+    /**
+     * Whether to profile the instruction sequences executed by the interpreter,
+     * and print the most executed sequences once all fibers complete.
+     * 
+     * Value of this option should be a boolean. Default is false.
+     * 
+     * This is meant for finding candidate superinstructions. While profiling, 
+     * superinstructions are disabled and the interpreter runs slower.
+     */
+    PROFILE_SEQUENCES,
+    
+    /**
+     * Whether to compile hot functions to JVM bytecode.
+     * 
+     * Value of this option should be a boolean. Default is false.
+     * 
+     * Only functions operating solely on integers are compiled (see BaselineCompiler).
+     * All others are always interpreted.
+     */
+    JIT,
+    
+    /**
+     * The amount of calls and loop iterations after which a function is compiled,
+     * if IOption.JIT is true.
+     * 
+     * Value of this option should be an int. Default is 1000.
+     */
+    JIT_THRESHOLD,
+    
+    /**
+     * Whether each worker thread should have its own local queue of Fibers,
+     * stealing from other workers once it runs out.
+     * 
+     * Value of this option should be a boolean. Default is false.
+     * 
+     * If false, all worker threads pull from one shared queue. Work-stealing 
+     * spares workers from contending on that queue when many Fibers are spawned
+     * (see FiberQueue)
+     */
+    WORK_STEALING,
+    
+    /**
+     * The amount of instructions a Fiber executes before yielding 
+     * its worker thread to other Fibers.
+     * 
+     * Value of this option should be an int. Default is DEFAULT_TIME_SLICE.
+     * 
+     * Fibers yield on their next call, return or loop iteration once their time
+     * slice is exhausted. A smaller time slice lets short Fibers run sooner
+     * behind long-running ones, at the cost of more switching between Fibers.
+     */
+    TIME_SLICE;
   }
   
+  public static final int DEFAULT_TIME_SLICE = 10000;
+  
   private static final Map<IOption, Object> DEFAULTS = new EnumMap<>(IOption.class);
   static {
     String [] moduleSearch = {System.getProperty("user.dir")};
@@ -127,6 +182,11 @@ public class InterpreterOptions {
     DEFAULTS.put(IOption.MEASURE, false);
     DEFAULTS.put(IOption.POOL_SIZE, 1);
     DEFAULTS.put(IOption.LOG_LEVEL, "OFF");
+    DEFAULTS.put(IOption.PROFILE_SEQUENCES, false);
+    DEFAULTS.put(IOption.JIT, false);
+    DEFAULTS.put(IOption.JIT_THRESHOLD, 1000);
+    DEFAULTS.put(IOption.WORK_STEALING, false);
+    DEFAULTS.put(IOption.TIME_SLICE, DEFAULT_TIME_SLICE);
 
     //DEFAULTS.put(IOption.INTERPRET_ONLY, false);
     //DEFAULTS.put(Option.MAX_HEAP_SIZE, 100000);
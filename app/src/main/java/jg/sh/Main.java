@@ -96,6 +96,43 @@ public class Main {
     measure.setType(Boolean.TYPE);
     cliOptions.addOption(measure);
     
+    Option profile = new Option("ps", "Whether to profile and output the most executed instruction sequences");
+    profile.setLongOpt("profseq");
+    profile.setValueSeparator('=');
+    profile.setRequired(false);
+    profile.setType(Boolean.TYPE);
+    cliOptions.addOption(profile);
+    
+    Option jit = new Option("j", "Whether to compile hot functions to JVM bytecode");
+    jit.setLongOpt("jit");
+    jit.setValueSeparator('=');
+    jit.setRequired(false);
+    jit.setType(Boolean.TYPE);
+    cliOptions.addOption(jit);
+    
+    Option jitThreshold = new Option("jt", "Sets the amount of calls and loop iterations before a function is compiled");
+    jitThreshold.setLongOpt("jitthreshold");
+    jitThreshold.setArgs(1);
+    jitThreshold.setValueSeparator('=');
+    jitThreshold.setRequired(false);
+    jitThreshold.setType(Integer.TYPE);
+    cliOptions.addOption(jitThreshold);
+    
+    Option workStealing = new Option("ws", "Whether worker threads should have their own Fiber queues and steal from each other");
+    workStealing.setLongOpt("worksteal");
+    workStealing.setValueSeparator('=');
+    workStealing.setRequired(false);
+    workStealing.setType(Boolean.TYPE);
+    cliOptions.addOption(workStealing);
+    
+    Option timeSlice = new Option("ts", "Sets the amount of instructions a fiber executes before yielding to other fibers");
+    timeSlice.setLongOpt("timeslice");
+    timeSlice.setArgs(1);
+    timeSlice.setValueSeparator('=');
+    timeSlice.setRequired(false);
+    timeSlice.setType(Integer.TYPE);
+    cliOptions.addOption(timeSlice);
+    
     Option additional = new Option("a", "A set of additonal modules to pre-compile with the main module");
     additional.setLongOpt("add");
     additional.setArgs(Option.UNLIMITED_VALUES);
@@ -146,6 +183,21 @@ public class Main {
       if (commandLine.hasOption(measure)) {
         options.put(IOption.MEASURE, true);
       }
+      if (commandLine.hasOption(profile)) {
+        options.put(IOption.PROFILE_SEQUENCES, true);
+      }
+      if (commandLine.hasOption(jit)) {
+        options.put(IOption.JIT, true);
+      }
+      if (commandLine.hasOption(jitThreshold)) {
+        options.put(IOption.JIT_THRESHOLD, Integer.parseInt(commandLine.getOptionValue(jitThreshold)));
+      }
+      if (commandLine.hasOption(workStealing)) {
+        options.put(IOption.WORK_STEALING, true);
+      }
+      if (commandLine.hasOption(timeSlice)) {
+        options.put(IOption.TIME_SLICE, Integer.parseInt(commandLine.getOptionValue(timeSlice)));
+      }
       
       if (commandLine.getArgList().size() >= 1) {
         String mainModule = commandLine.getArgList().get(0);
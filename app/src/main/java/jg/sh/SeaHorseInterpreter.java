@@ -45,6 +45,11 @@ public class SeaHorseInterpreter {
   public static final String CACHE_DIR_NAME = ".mod_cache/";
   
   private static final int MAX_GC_OBJECTS = 999999999;
+  
+  /**
+   * Amount of instruction sequences printed when IOption.PROFILE_SEQUENCES is true
+   */
+  private static final int PROFILE_REPORT_SIZE = 20;
 
   private final Map<IOption, Object> options;
   
@@ -180,9 +185,14 @@ public class SeaHorseInterpreter {
         manager.start(true);
         final long end = System.nanoTime();
         System.out.println("Seahorse VM elasped time: "+(end - start)+" nanoseconds, or "+( (end-start) / 1000000)+" ms");
+        manager.reportIdleTimes(System.out);
       }
       else{
-        manager.start(false);
+        manager.start(finder.getProfiler() != null);
+      }
+      
+      if (finder.getProfiler() != null) {
+        finder.getProfiler().report(System.out, PROFILE_REPORT_SIZE);
       }
     }
   }
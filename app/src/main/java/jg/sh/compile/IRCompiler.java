@@ -25,6 +25,7 @@ import jg.sh.compile.instrs.ArgInstr;
 import jg.sh.compile.instrs.CommentInstr;
 import jg.sh.compile.instrs.Instruction;
 import jg.sh.compile.instrs.JumpInstr;
+import jg.sh.compile.instrs.KeywordCallInstr;
 import jg.sh.compile.instrs.LabelInstr;
 import jg.sh.compile.instrs.LoadCellInstr;
 import jg.sh.compile.instrs.LoadStorePair;
@@ -317,12 +318,26 @@ public class IRCompiler implements NodeVisitor<NodeResult, CompContext> {
         }
         else {
           instrs.addAll(stmtResult.getInstructions());
+          popUnusedValues(result.first, stmtResult.getInstructions(), instrs);
         }
       }
     }
 
-    final ObjectFile objectFile = new ObjectFile(module.getName(), moduleStart.getName(), constantPool, instrs);
-    return exceptions.isEmpty() ? new CompilerResult(objectFile) : new CompilerResult(exceptions);
+    /*
+     * Last few instrs: return the module instance, which
+     * is what a "use" statement of this module loads
+     */
+    instrs.add(new CommentInstr("<-- Module End -->"));
+    instrs.add(new LoadCellInstr(Location.DUMMY, Location.DUMMY, LOADMOD, -1));
+    instrs.add(new NoArgInstr(Location.DUMMY, Location.DUMMY, RET));
+
+    if (!exceptions.isEmpty()) {
+      return new CompilerResult(exceptions);
+    }
+
+    final int maxStackDepth = StackAnalyzer.analyze(instrs).getMaxDepth();
+    final ObjectFile objectFile = new ObjectFile(module.getName(), moduleStart.getName(), constantPool, maxStackDepth, instrs);
+    return new CompilerResult(objectFile);
   }
 
   @Override
@@ -646,6 +661,10 @@ public class IRCompiler implements NodeVisitor<NodeResult, CompContext> {
           final IdentifierInfo funcIdenInfo = blockContext.getDirect(func.getBoundName().getIdentifier());
           instrs.add(funcIdenInfo.getStoreInstr());
         }
+        else {
+          //The function is never used, so discard it
+          instrs.add(new NoArgInstr(func.end, func.end, POP));
+        }
       }
       else if(target.first instanceof VarDeclr) {
         //This component has already been validated + compiled 
@@ -655,7 +674,14 @@ public class IRCompiler implements NodeVisitor<NodeResult, CompContext> {
         instrs.addAll(vResult.getInstructions());
       }
       else {        
-        target.first.accept(this, blockContext).pipeErr(exceptions).pipeInstr(instrs);
+        final NodeResult stmtResult = target.first.accept(this, blockContext);
+        if (stmtResult.hasExceptions()) {
+          exceptions.addAll(stmtResult.getExceptions());
+        }
+        else {
+          instrs.addAll(stmtResult.getInstructions());
+          popUnusedValues(target.first, stmtResult.getInstructions(), instrs);
+        }
       }
     }
 
@@ -1115,12 +1141,20 @@ public class IRCompiler implements NodeVisitor<NodeResult, CompContext> {
     instrs.add(new NoArgInstr(Location.DUMMY, Location.DUMMY, LOADNULL));
     instrs.add(new NoArgInstr(Location.DUMMY, Location.DUMMY, RET));
 
+    //All locals of this function - including those of nested blocks - have been allocated by now
+    final int localVarCount = (int) funcContext.getValue(ContextKey.LOCAL_VAR_INDEX);
+
+    //Compute how deep the operand stack of this function can get
+    final int maxStackDepth = exceptions.isEmpty() ? StackAnalyzer.analyze(instrs).getMaxDepth() : 0;
+
     //Now, allocate this function as a code object instance
     final CodeObject funcCodeObj = new CodeObject(funcDef.getSignature(), 
                                                   funcLabel, 
                                                   keywordParamToIndexMap, 
                                                   varArgIndex, 
                                                   keywordVarArgsIndex,
+                                                  localVarCount,
+                                                  maxStackDepth,
                                                   instrs, 
                                                   captures);
     final int funcCodeObjIndex = pool.addComponent(funcCodeObj);
@@ -1217,8 +1251,10 @@ public class IRCompiler implements NodeVisitor<NodeResult, CompContext> {
       }
 
       /*
-       * At this point, both operands are true. Jump to endBranch
+       * At this point, both operands are true. Push true and jump to endBranch
        */
+      final int trueConstant = pool.addComponent(new BoolConstant(true));
+      instrs.add(new ArgInstr(binaryOpExpr.start, binaryOpExpr.end, LOADC, trueConstant));
       instrs.add(new JumpInstr(binaryOpExpr.start, binaryOpExpr.end, JUMP, endBranch));
 
       //operandFalse label start
@@ -1426,28 +1462,63 @@ public class IRCompiler implements NodeVisitor<NodeResult, CompContext> {
     //System.out.println(" ===> visit call: "+funcCall.getTarget().repr()+" => "+Arrays.toString(funcCall.getArguments()));
 
     /*
-     * Make an argument vector to pass function arguments
+     * Arguments are pushed on the operand stack in order, and are 
+     * taken straight off of it by the CALL instruction.
+     * 
+     * Calls with only positional arguments use CALL0 to CALL4, based on their argument count.
+     * Calls with keyword arguments use CALLK, which refers to the names of its 
+     * arguments - their keyword layout - in the constant pool.
+     * 
+     * Any other call makes an argument vector to pass function arguments
      */
-    instructions.add(new NoArgInstr(funcCall.start, funcCall.end, MAKEARGV));
+    final Argument [] arguments = funcCall.getArguments();
 
-    for(Argument arg : funcCall.getArguments()) {
-      arg.getArgument().accept(this, parentContext).pipeErr(exceptions).pipeInstr(instructions);
-      /**
-       * If the argument isn't geared towards an optional parameter,
-       * the argNameIndex is -1, signaling that it's a positional argument.
-       */
-      final int argNameIndex = arg.hasName() ? 
-                                  constantPool.addComponent(new StringConstant(arg.getParamName().getIdentifier())) : 
-                                  -1;
-
-      instructions.add(new ArgInstr(arg.getArgument().start, 
-                                    arg.getArgument().end, 
-                                    ARG, 
-                                    argNameIndex));
+    boolean hasKeywords = false;
+    for(Argument arg : arguments) {
+      hasKeywords |= arg.hasName();
     }
 
-    funcCall.getTarget().accept(this, parentContext).pipeErr(exceptions).pipeInstr(instructions);
-    instructions.add(new NoArgInstr(funcCall.start, funcCall.end, CALL));
+    if (!hasKeywords && arguments.length <= MAX_CALL_ARITY) {
+      for(Argument arg : arguments) {
+        arg.getArgument().accept(this, parentContext).pipeErr(exceptions).pipeInstr(instructions);
+      }
+
+      funcCall.getTarget().accept(this, parentContext).pipeErr(exceptions).pipeInstr(instructions);
+      instructions.add(new NoArgInstr(funcCall.start, funcCall.end, callOf(arguments.length)));
+    }
+    else if (hasKeywords) {
+      final StringBuilder layout = new StringBuilder();
+      for(int i = 0; i < arguments.length; i++) {
+        final Argument arg = arguments[i];
+        arg.getArgument().accept(this, parentContext).pipeErr(exceptions).pipeInstr(instructions);
+
+        if (i > 0) {
+          layout.append(',');
+        }
+        if (arg.hasName()) {
+          layout.append(arg.getParamName().getIdentifier());
+        }
+      }
+
+      final int layoutIndex = constantPool.addComponent(new StringConstant(layout.toString()));
+
+      funcCall.getTarget().accept(this, parentContext).pipeErr(exceptions).pipeInstr(instructions);
+      instructions.add(new KeywordCallInstr(funcCall.start, funcCall.end, layoutIndex, arguments.length));
+    }
+    else {
+      instructions.add(new NoArgInstr(funcCall.start, funcCall.end, MAKEARGV));
+
+      for(Argument arg : arguments) {
+        arg.getArgument().accept(this, parentContext).pipeErr(exceptions).pipeInstr(instructions);
+        instructions.add(new ArgInstr(arg.getArgument().start, 
+                                      arg.getArgument().end, 
+                                      ARG, 
+                                      -1));
+      }
+
+      funcCall.getTarget().accept(this, parentContext).pipeErr(exceptions).pipeInstr(instructions);
+      instructions.add(new NoArgInstr(funcCall.start, funcCall.end, CALL));
+    }
 
     return exceptions.isEmpty() ? valid(instructions) : invalid(exceptions);
   }
@@ -1697,6 +1768,20 @@ public class IRCompiler implements NodeVisitor<NodeResult, CompContext> {
   }
 
   //Utility methods - START
+
+  /**
+   * Appends a POP for every value a statement leaves on the operand stack.
+   * 
+   * Expression statements (ex: a function call on its own) leave their 
+   * value on the operand stack, but that value is never used.
+   */
+  private static void popUnusedValues(Statement statement, List<Instruction> stmtInstrs, List<Instruction> instrs) {
+    final int unused = StackAnalyzer.analyze(stmtInstrs).getExitDepth();
+    for (int i = 0; i < unused; i++) {
+      instrs.add(new NoArgInstr(statement.end, statement.end, POP));
+    }
+  }
+
   private static long labelTag = 0;
   
   private static String genLabelName(String labelName) {
@@ -15,12 +15,18 @@ public class ObjectFile {
   private final String name;
   private final String moduleLabelStart;
   private final ConstantPool pool;
+  private final int moduleMaxStackDepth;
   private final List<Instruction> moduleInstrs;
 
-  public ObjectFile(String name, String moduleLabelStart, ConstantPool pool, List<Instruction> moduleInstrs) {
+  public ObjectFile(String name, 
+                    String moduleLabelStart, 
+                    ConstantPool pool, 
+                    int moduleMaxStackDepth, 
+                    List<Instruction> moduleInstrs) {
     this.name = name;
     this.moduleLabelStart = moduleLabelStart;
     this.pool = pool;
+    this.moduleMaxStackDepth = moduleMaxStackDepth;
     this.moduleInstrs = moduleInstrs;
   }
   
@@ -28,6 +34,13 @@ public class ObjectFile {
     return moduleInstrs;
   }
   
+  /**
+   * @return the maximum depth the operand stack reaches when running the module's instructions
+   */
+  public int getModuleMaxStackDepth() {
+    return moduleMaxStackDepth;
+  }
+  
   public ConstantPool getPool() {
     return pool;
   }
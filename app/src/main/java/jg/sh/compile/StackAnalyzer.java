@@ -0,0 +1,279 @@
+package jg.sh.compile;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import jg.sh.compile.instrs.Instruction;
+import jg.sh.compile.instrs.JumpInstr;
+import jg.sh.compile.instrs.KeywordCallInstr;
+import jg.sh.compile.instrs.LabelInstr;
+import jg.sh.compile.instrs.OpCode;
+
+/**
+ * Tracks the depth of the operand stack across a list of instructions.
+ *
+ * Every path through the instructions is walked - following jumps
+ * through their target labels - and the operand stack depth before each
+ * instruction is recorded. From this, the compiler learns:
+ *   - the maximum operand stack depth a CodeObject can ever reach, which
+ *     lets a StackFrame preallocate its operand stack
+ *   - the depth left over after a statement, which tells the compiler
+ *     how many unused values should be popped
+ *
+ * Jumps to labels outside of the given instructions (ex: a "break"
+ * within a nested statement) are treated as leaving the instructions.
+ *
+ * An instruction reached with two different depths, or one that pops
+ * from an empty operand stack, is a violation of stack discipline
+ * and is reported with an IllegalStateException.
+ *
+ * @author Jose
+ */
+public final class StackAnalyzer {
+
+  /**
+   * Marks an instruction (or the end of the instructions) as unreachable
+   */
+  public static final int UNREACHED = -1;
+
+  private final int maxDepth;
+  private final int exitDepth;
+
+  private StackAnalyzer(int maxDepth, int exitDepth) {
+    this.maxDepth = maxDepth;
+    this.exitDepth = exitDepth;
+  }
+
+  /**
+   * The maximum depth the operand stack reaches within the analyzed instructions
+   * @return the maximum depth the operand stack reaches
+   */
+  public int getMaxDepth() {
+    return maxDepth;
+  }
+
+  /**
+   * The depth of the operand stack once execution falls through
+   * the last of the analyzed instructions.
+   *
+   * @return the depth of the operand stack after the last instruction,
+   *         or UNREACHED if execution never falls through the last instruction
+   */
+  public int getExitDepth() {
+    return exitDepth;
+  }
+
+  /**
+   * Analyzes the given instructions, assuming an empty operand stack
+   * at the first instruction.
+   *
+   * @param instrs - the instructions to analyze
+   * @return the StackAnalyzer holding the results of the analysis
+   * @throws IllegalStateException if the instructions violate stack discipline
+   */
+  public static StackAnalyzer analyze(List<Instruction> instrs) {
+    final Map<String, Integer> labels = new HashMap<>();
+    for (int i = 0; i < instrs.size(); i++) {
+      final Instruction instr = instrs.get(i);
+      if (instr instanceof LabelInstr) {
+        labels.put(((LabelInstr) instr).getName(), i);
+      }
+    }
+
+    //Depth of the operand stack before each instruction. The extra slot is the end of the instructions.
+    final int [] depths = new int[instrs.size() + 1];
+    Arrays.fill(depths, UNREACHED);
+
+    final Deque<Integer> worklist = new ArrayDeque<>();
+
+    reach(instrs, depths, worklist, 0, 0);
+
+    /*
+     * POPERR instructions start catch blocks, which are reached
+     * through thrown errors rather than explicit jumps.
+     */
+    for (int i = 0; i < instrs.size(); i++) {
+      if (instrs.get(i).getOpCode() == OpCode.POPERR) {
+        reach(instrs, depths, worklist, i, 0);
+      }
+    }
+
+    int maxDepth = 0;
+
+    while (!worklist.isEmpty()) {
+      final int index = worklist.pop();
+      final Instruction instr = instrs.get(index);
+      final OpCode op = instr.getOpCode();
+
+      //POPERR clears the operand stack before pushing the error
+      final int before = op == OpCode.POPERR ? 0 : depths[index];
+
+      final int pops = pops(instr);
+      if (before < pops) {
+        throw new IllegalStateException("Operand stack underflow at "+index+" ("+instr+")");
+      }
+
+      final int after = before - pops + pushes(op);
+      maxDepth = Math.max(maxDepth, Math.max(before, after));
+
+      if (instr instanceof JumpInstr) {
+        final Integer target = labels.get(((JumpInstr) instr).getTargetLabel());
+        if (target != null) {
+          reach(instrs, depths, worklist, target, after);
+        }
+      }
+
+      if (op != OpCode.JUMP && op != OpCode.RET && op != OpCode.RETE) {
+        reach(instrs, depths, worklist, index + 1, after);
+      }
+    }
+
+    return new StackAnalyzer(maxDepth, depths[instrs.size()]);
+  }
+
+  private static void reach(List<Instruction> instrs, int [] depths, Deque<Integer> worklist, int index, int depth) {
+    if (depths[index] == UNREACHED) {
+      depths[index] = depth;
+      if (index < instrs.size()) {
+        worklist.push(index);
+      }
+    }
+    else if (depths[index] != depth && (index == instrs.size() || instrs.get(index).getOpCode() != OpCode.POPERR)) {
+      final String at = index < instrs.size() ? instrs.get(index).toString() : "end of instructions";
+      throw new IllegalStateException("Inconsistent operand stack depth at "+index+" ("+at+"): "+
+                                      depths[index]+" vs. "+depth);
+    }
+  }
+
+  /**
+   * Returns the amount of operands the given Instruction pops off the operand stack.
+   * 
+   * This is the same as pops(OpCode), except for CALLK, whose 
+   * operand count is held by its KeywordCallInstr
+   * @param instr - the Instruction
+   * @return the amount of operands popped
+   */
+  public static int pops(Instruction instr) {
+    if (instr instanceof KeywordCallInstr) {
+      //The arguments and the callable
+      return ((KeywordCallInstr) instr).getArgCount() + 1;
+    }
+    return pops(instr.getOpCode());
+  }
+
+  /**
+   * Returns the amount of operands the given OpCode pops off the operand stack
+   * @param op - the OpCode
+   * @return the amount of operands popped
+   */
+  public static int pops(OpCode op) {
+    switch (op) {
+      case ADD:
+      case SUB:
+      case MUL:
+      case DIV:
+      case MOD:
+      case LESS:
+      case GREAT:
+      case LESSE:
+      case GREATE:
+      case EQUAL:
+      case NOTEQUAL:
+      case BAND:
+      case BOR:
+      case CALL:
+      case STOREATTR:
+      case MAKECONST:
+      case BIND:
+      case ALLOCF:
+      case LOADIN:
+      case ARG:
+      case CALL1:
+        return 2;
+      case STOREIN:
+      case CALL2:
+        return 3;
+      case CALL3:
+        return 4;
+      case CALL4:
+        return 5;
+      case NEG:
+      case NOT:
+      case JUMPT:
+      case JUMPF:
+      case RETE:
+      case RET:
+      case STORE:
+      case STORE_CL:
+      case STOREMV:
+      case LOADATTR:
+      case ALLOCA:
+      case ALLOCO:
+      case SEAL:
+      case POP:
+      case CALL0:
+        return 1;
+      default:
+        return 0;
+    }
+  }
+
+  /**
+   * Returns the amount of operands the given OpCode pushes on the operand stack
+   * @param op - the OpCode
+   * @return the amount of operands pushed
+   */
+  public static int pushes(OpCode op) {
+    switch (op) {
+      case ADD:
+      case SUB:
+      case MUL:
+      case DIV:
+      case MOD:
+      case NEG:
+      case LESS:
+      case GREAT:
+      case LESSE:
+      case GREATE:
+      case EQUAL:
+      case NOTEQUAL:
+      case NOT:
+      case BAND:
+      case BOR:
+      case CALL:
+      case CALL0:
+      case CALL1:
+      case CALL2:
+      case CALL3:
+      case CALL4:
+      case CALLK:
+      case LOADC:
+      case LOAD:
+      case POPERR:
+      case LOADMOD:
+      case LOADATTR:
+      case STOREATTR:
+      case MAKECONST:
+      case LOADNULL:
+      case LOAD_CL:
+      case LOADMV:
+      case BIND:
+      case ALLOCF:
+      case ALLOCA:
+      case ALLOCO:
+      case LOADIN:
+      case STOREIN:
+      case MAKEARGV:
+      case HAS_KARG:
+      case ARG:
+      case SEAL:
+        return 1;
+      default:
+        return 0;
+    }
+  }
+}
@@ -0,0 +1,30 @@
+package jg.sh.compile.instrs;
+
+import jg.sh.common.Location;
+
+/**
+ * Specifies a CALLK instruction.
+ * 
+ * Its argument is the index of the call's keyword layout in the constant pool. 
+ * As the layout itself isn't known without the constant pool, this instruction
+ * also holds the amount of arguments it takes off the operand stack.
+ * 
+ * @author Jose
+ *
+ */
+public class KeywordCallInstr extends ArgInstr {
+
+  private final int argCount;
+
+  public KeywordCallInstr(Location start, Location end, int layoutIndex, int argCount) {
+    super(start, end, OpCode.CALLK, layoutIndex);
+    this.argCount = argCount;
+  }
+
+  /**
+   * @return the amount of arguments this instruction takes off the operand stack
+   */
+  public int getArgCount() {
+    return argCount;
+  }
+}
@@ -301,8 +301,8 @@ public enum OpCode {
    * 
    * STACK Structure:
    * 
-   * TOP    ->  target
-   *         |  index
+   * TOP    ->  index
+   *         |  target
    * BOTTOM ->
    */
   LOADIN,
@@ -314,8 +314,8 @@ public enum OpCode {
    * 
    * STACK Structure:
    * 
-   * TOP    ->  target
-   *         |  index
+   * TOP    ->  index
+   *         |  target
    *         |  value
    * BOTTOM ->
    */
@@ -375,24 +375,189 @@ public enum OpCode {
    * BOTTOM  ->
    */
   SEAL,
-  
+
+  /*
+   * Discards the value on top of the operand stack.
+   *
+   * This is emitted after expression statements whose value
+   * is never used (ex: a function call as its own statement)
+   *
+   * TOP     -> value
+   *          |
+   * BOTTOM  ->
+   */
+  POP,
+
+  /*
+   * Arity-specialized calls.
+   * 
+   * Like CALL, but the arguments are taken straight off the operand stack
+   * rather than from an ArgVector. CALL0 to CALL4 take that many positional arguments.
+   * 
+   * CALLK takes an index (from the constant pool) to the call's keyword layout: 
+   * a string of the names of its arguments, in order and separated by commas - with 
+   * positional arguments having empty names. (ex: f(1, b := 2) has the layout ",b")
+   * 
+   * TOP    -> callable or dataRecord
+   *         | last argument
+   *         | ...
+   *         | first argument
+   * BOTTOM ->
+   * 
+   * The return value of the function is pushed on the operand stack, as with CALL.
+   */
+  CALL0,
+  CALL1,
+  CALL2,
+  CALL3,
+  CALL4,
+  CALLK,
+
   /*
    * Dummy instruction. Does absolutely nothing
    */
-  PASS;
+  PASS,
+  
+  /*
+   * Quickened instructions.
+   * 
+   * These are never emitted by the compiler. Instead, the interpreter
+   * rewrites a generic arithmetic/comparison instruction in place with 
+   * one of these once it observes the types of its operands.
+   * 
+   * Each quickened instruction guards on its operand types. If the guard fails,
+   * the instruction is rewritten back to its generic form (and stays that way).
+   * 
+   * Their stack structure is the same as their generic counterparts.
+   */
+  ADD_INT_INT,
+  ADD_FLOAT_FLOAT,
+  ADD_STR,  //Either operand is a string
+  SUB_INT_INT,
+  SUB_FLOAT_FLOAT,
+  MUL_INT_INT,
+  MUL_FLOAT_FLOAT,
+  LESS_INT_INT,
+  GREAT_INT_INT,
+  LESSE_INT_INT,
+  GREATE_INT_INT,
+  
+  /*
+   * Superinstructions.
+   * 
+   * Like quickened instructions, these are never emitted by the compiler. Instead, 
+   * SuperInstructions fuses common instruction sequences after a module's code is
+   * contextualized by rewriting the first instruction of the sequence.
+   * 
+   * The rest of the sequence is left in place, and superinstructions read their 
+   * operands from it. So, jumps to an instruction within a sequence still work.
+   * 
+   * A superinstruction only handles the case of integer operands. Otherwise, it
+   * executes as the first instruction of its sequence and the rest of the sequence 
+   * is executed normally.
+   */
+  LOAD_LOADC_CMP_JUMPF,   //LOAD a; LOADC k; LESS/GREAT/LESSE/GREATE; JUMPF label
+  LOAD_LOAD_ARITH_STORE,  //LOAD a; LOAD b; ADD/SUB/MUL; STORE c
+  LOAD_LOADC_ARITH_STORE; //LOAD a; LOADC k; ADD/SUB/MUL; STORE c
   
   private static final Set<OpCode> ARG_INSTRS;  //Instructions that require an argument
   
+  private static final OpCode [] OPCODES = values();  //Cached, as values() returns a new array per call
+  
+  public static final int MAX_CALL_ARITY = 4;  //The most positional arguments a call can have to use CALL0 to CALL4
+  
   static {
     OpCode [] options = {STORE, LOAD, STOREATTR, LOADATTR, 
                          LOADC, JUMP, COMMENT, LABEL, 
                          LOADMV, STOREMV, LOAD_CL, STORE_CL, 
                          ARG, ALLOCO, LOADMOD, MAKECONST,
-                         CONSTMV, EXPORTMV, HAS_KARG};
+                         CONSTMV, EXPORTMV, HAS_KARG, CALLK};
     
     ARG_INSTRS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(options)));
   }
     
+  /**
+   * Retrieves the OpCode with the given ordinal.
+   * 
+   * This is used by the interpreter when decoding the 
+   * int-encoded instructions of a RuntimeCodeObject
+   * 
+   * @param ordinal - the ordinal of the OpCode
+   * @return the OpCode with the given ordinal
+   */
+  public static OpCode fromOrdinal(int ordinal) {
+    return OPCODES[ordinal];
+  }
+    
+  /**
+   * Retrieves the generic form of a quickened OpCode.
+   * 
+   * @param opCode - the OpCode
+   * @return the generic form of the OpCode, or the OpCode itself if it isn't quickened
+   */
+  public static OpCode toGeneric(OpCode opCode) {
+    switch (opCode) {
+      case ADD_INT_INT:
+      case ADD_FLOAT_FLOAT:
+      case ADD_STR:
+        return ADD;
+      case SUB_INT_INT:
+      case SUB_FLOAT_FLOAT:
+        return SUB;
+      case MUL_INT_INT:
+      case MUL_FLOAT_FLOAT:
+        return MUL;
+      case LESS_INT_INT:
+        return LESS;
+      case GREAT_INT_INT:
+        return GREAT;
+      case LESSE_INT_INT:
+        return LESSE;
+      case GREATE_INT_INT:
+        return GREATE;
+      default:
+        return opCode;
+    }
+  }
+    
+  /**
+   * Retrieves an OpCode as the compiler emitted it: the generic form of a 
+   * quickened OpCode, or the first instruction of a superinstruction's sequence.
+   * 
+   * As the rest of a superinstruction's sequence is still in place, 
+   * treating a superinstruction as its first instruction is equivalent.
+   * 
+   * @param opCode - the OpCode
+   * @return the OpCode as emitted by the compiler
+   */
+  public static OpCode toCompiled(OpCode opCode) {
+    switch (opCode) {
+      case LOAD_LOADC_CMP_JUMPF:
+      case LOAD_LOAD_ARITH_STORE:
+      case LOAD_LOADC_ARITH_STORE:
+        return LOAD;
+      default:
+        return toGeneric(opCode);
+    }
+  }
+    
+  /**
+   * Retrieves the arity-specialized CALL instruction for a call with only positional arguments
+   * @param argCount - the amount of positional arguments, at most MAX_CALL_ARITY
+   * @return the CALL instruction taking that many arguments
+   */
+  public static OpCode callOf(int argCount) {
+    return OPCODES[CALL0.ordinal() + argCount];
+  }
+  
+  /**
+   * @param opCode - one of CALL0 to CALL4
+   * @return the amount of arguments the OpCode takes
+   */
+  public static int arityOf(OpCode opCode) {
+    return opCode.ordinal() - CALL0.ordinal();
+  }
+    
   static boolean isArithmetic(OpCode opCode) {
     return opCode.ordinal() >= ADD.ordinal() && opCode.ordinal() <= NEG.ordinal();
   }
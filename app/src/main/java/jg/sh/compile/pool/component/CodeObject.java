@@ -17,6 +17,8 @@ public class CodeObject implements PoolComponent{
   private final int [] captures;
   private final int varArgIndex;
   private final int keywordVarArgIndex;
+  private final int localVarCount;
+  private final int maxStackDepth;
   //private final boolean [] constantCaptures;
   
   public CodeObject(FunctionSignature signature, 
@@ -24,6 +26,8 @@ public class CodeObject implements PoolComponent{
                     Map<String, Integer> keywordIndexes, 
                     int varArgIndex,
                     int keywordVarArgIndex,
+                    int localVarCount,
+                    int maxStackDepth,
                     List<Instruction> instrs, 
                     int [] captures) {
     this.signature = signature;
@@ -33,6 +37,8 @@ public class CodeObject implements PoolComponent{
     this.captures = captures;
     this.varArgIndex = varArgIndex;
     this.keywordVarArgIndex = keywordVarArgIndex;
+    this.localVarCount = localVarCount;
+    this.maxStackDepth = maxStackDepth;
     
     /*
     this.constantCaptures = constantCaptures;
@@ -67,6 +73,20 @@ public class CodeObject implements PoolComponent{
   public int getVarArgIndex() {
     return varArgIndex;
   }
+  
+  /**
+   * @return the amount of local variable slots needed to run this CodeObject's instructions
+   */
+  public int getLocalVarCount() {
+    return localVarCount;
+  }
+  
+  /**
+   * @return the maximum depth the operand stack reaches when running this CodeObject's instructions
+   */
+  public int getMaxStackDepth() {
+    return maxStackDepth;
+  }
   /*
   public boolean[] getConstantCaptures() {
     return constantCaptures;
@@ -85,6 +105,7 @@ public class CodeObject implements PoolComponent{
   public String toString() {
     return "<code obj> "+boundName+System.lineSeparator()+
            "     -> Captures "+Arrays.toString(captures)+System.lineSeparator()+
+           "     -> Locals "+localVarCount+", Max Stack "+maxStackDepth+System.lineSeparator()+
                          instrs.stream()
                                .map(x -> "        "+x.toString())
                                .collect(Collectors.joining(System.lineSeparator()));
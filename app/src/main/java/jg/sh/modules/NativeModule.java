@@ -1,7 +1,5 @@
 package jg.sh.modules;
 
-import java.util.Collections;
-
 import jg.sh.common.FunctionSignature;
 import jg.sh.runtime.exceptions.InvocationException;
 import jg.sh.runtime.loading.RuntimeModule;
@@ -42,7 +40,7 @@ public abstract class NativeModule {
   private final InternalFunction loadingFunction;
   
   protected NativeModule() {
-    this.runtimeModule = new RuntimeModule(getName(), null, Collections.emptyMap());
+    this.runtimeModule = new RuntimeModule(getName(), null, new RuntimeInstance[0]);
     
     this.loadingFunction = new InternalFunction(FunctionSignature.NO_ARG) {      
       @Override
@@ -5,6 +5,7 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import jg.sh.common.FunctionSignature;
@@ -17,6 +18,7 @@ import jg.sh.runtime.loading.RuntimeModule;
 import jg.sh.runtime.objects.ArgVector;
 import jg.sh.runtime.objects.Initializer;
 import jg.sh.runtime.objects.RuntimeArray;
+import jg.sh.runtime.objects.RuntimeChannel;
 import jg.sh.runtime.objects.RuntimeError;
 import jg.sh.runtime.objects.RuntimeInstance;
 import jg.sh.runtime.objects.RuntimeNull;
@@ -43,6 +45,12 @@ import static jg.sh.runtime.objects.callable.InternalFunction.ARG_INDEX;
 public class SystemModule extends NativeModule {
   public static final String SYSTEM_NAME = "system";
   
+  /**
+   * The keyword parameter of makeChannel(), setting the most values 
+   * the channel buffers. If not given, the channel is unbounded.
+   */
+  public static final String CAPACITY_PARAM = "capacity";
+  
   private static SystemModule runtimeModule_INSTANCE = new SystemModule();
   
   private final BufferedReader INPUT_READER;
@@ -59,8 +67,8 @@ public class SystemModule extends NativeModule {
 
   @NativeFunction(hasVariableParams = true, optionalParams = {}, positionalParams = 0)
   public RuntimeInstance println(Fiber fiber, RuntimeInstance self, RuntimeInternalCallable callable, ArgVector args) {
-    for(int i = ARG_INDEX; i < args.getPositionals().size(); i++) {
-      System.out.print(args.getPositional(i));
+    for(int i = ARG_INDEX; i < args.getPositionalCount(); i++) {
+      System.out.print(args.positionalAt(i));
     }
     
     System.out.println();
@@ -68,7 +76,7 @@ public class SystemModule extends NativeModule {
   }
 
   @NativeFunction(positionalParams = 1)
-  public RuntimeInstance print(Fiber fiber, RuntimeInstance self, RuntimeInternalCallable callable, ArgVector args) {
+  public RuntimeInstance print(Fiber fiber, RuntimeInstance self, RuntimeInternalCallable callable, ArgVector args) throws InvocationException {
     System.out.print(args.getPositional(ARG_INDEX));
     return RuntimeNull.NULL;
   }
@@ -92,8 +100,8 @@ public class SystemModule extends NativeModule {
     /*
      * Basically does what println does first before getting input
      */
-    for(int i = ARG_INDEX; i < args.getPositionals().size(); i++) {
-      System.out.print(args.getPositional(i));
+    for(int i = ARG_INDEX; i < args.getPositionalCount(); i++) {
+      System.out.print(args.positionalAt(i));
     }       
     System.out.println();
     
@@ -204,6 +212,71 @@ public class SystemModule extends NativeModule {
     }
   }
 
+  /*
+   * Waits for a fiber to complete, giving back whether it did within the timeout
+   */
+  @NativeFunction(positionalParams = 1, optionalParams = {Fiber.TIMEOUT_PARAM})
+  public RuntimeInstance join(Fiber fiber, RuntimeInstance self, RuntimeInternalCallable callable, ArgVector args) throws InvocationException{
+    RuntimeInstance argument = args.getPositional(ARG_INDEX); 
+    if (argument instanceof Fiber) {
+      return ((Fiber) argument).join(fiber, Fiber.getTimeout(callable, args));
+    }
+    else {
+      throw new InvocationException("Fiber expected", callable);     
+    }
+  }
+
+  /*
+   * Waits for a fiber to complete, giving back its result - or 
+   * raising its error, or an error if the timeout elapses first
+   */
+  @NativeFunction(positionalParams = 1, optionalParams = {Fiber.TIMEOUT_PARAM})
+  public RuntimeInstance await(Fiber fiber, RuntimeInstance self, RuntimeInternalCallable callable, ArgVector args) throws InvocationException{
+    RuntimeInstance argument = args.getPositional(ARG_INDEX); 
+    if (argument instanceof Fiber) {
+      return ((Fiber) argument).await(fiber, Fiber.getTimeout(callable, args));
+    }
+    else {
+      throw new InvocationException("Fiber expected", callable);     
+    }
+  }
+
+  @NativeFunction(optionalParams = {CAPACITY_PARAM})
+  public RuntimeInstance makeChannel(Fiber fiber, RuntimeInstance self, RuntimeInternalCallable callable, ArgVector args) throws InvocationException{
+    if (!args.hasKeywordArg(CAPACITY_PARAM)) {
+      return fiber.getHeapAllocator().allocateChannel(RuntimeChannel.UNBOUNDED);
+    }
+    
+    RuntimeInstance capacity = args.getKeywordArgs().get(CAPACITY_PARAM);
+    if (capacity instanceof RuntimeInteger && ((RuntimeInteger) capacity).getValue() >= 0) {
+      return fiber.getHeapAllocator().allocateChannel((int) ((RuntimeInteger) capacity).getValue());
+    }
+    throw new InvocationException("The capacity must be a non-negative integer", callable);     
+  }
+
+  /*
+   * Receives from whichever of an array of channels first has a value, giving back
+   * [ok, value, index of the channel] - or [false, null, -1] if timed out (see RuntimeChannel.select())
+   */
+  @NativeFunction(positionalParams = 1, optionalParams = {Fiber.TIMEOUT_PARAM})
+  public RuntimeInstance select(Fiber fiber, RuntimeInstance self, RuntimeInternalCallable callable, ArgVector args) throws InvocationException{
+    RuntimeInstance argument = args.getPositional(ARG_INDEX); 
+    if (argument instanceof RuntimeArray) {
+      List<RuntimeInstance> elements = ((RuntimeArray) argument).getArray(fiber.getHeapAllocator());
+      RuntimeChannel [] channels = new RuntimeChannel[elements.size()];
+      for (int i = 0; i < channels.length; i++) {
+        if (!(elements.get(i) instanceof RuntimeChannel)) {
+          throw new InvocationException("Channel expected at index "+i, callable);     
+        }
+        channels[i] = (RuntimeChannel) elements.get(i);
+      }
+      return RuntimeChannel.select(fiber, channels, Fiber.getTimeout(callable, args));
+    }
+    else {
+      throw new InvocationException("Array of channels expected", callable);     
+    }
+  }
+
   @NativeFunction(positionalParams = 1)
   public RuntimeInstance toString(Fiber fiber, RuntimeInstance self, RuntimeInternalCallable callable, ArgVector args) throws InvocationException{
     RuntimeInstance argument = args.getPositional(ARG_INDEX); 
@@ -5,10 +5,11 @@ import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 import jg.sh.common.FunctionSignature;
-import jg.sh.runtime.loading.ContextualInstr;
+import jg.sh.runtime.loading.ModuleObject;
 import jg.sh.runtime.loading.RuntimeModule;
 import jg.sh.runtime.objects.Initializer;
 import jg.sh.runtime.objects.RuntimeArray;
+import jg.sh.runtime.objects.RuntimeChannel;
 import jg.sh.runtime.objects.RuntimeCodeObject;
 import jg.sh.runtime.objects.RuntimeError;
 import jg.sh.runtime.objects.RuntimeInstance;
@@ -74,6 +75,18 @@ public class HeapAllocator {
     return object;
   }
   
+  public ModuleObject allocateModuleObject(RuntimeModule module) {    
+    //perform garbage collection prior to allocation
+    if (heapPointer >= storageLimit) {
+      throw new IllegalStateException("Out of memory when allocating module object!");
+    }
+    
+    final ModuleObject object = new ModuleObject(module);
+    heapPointer++;
+    
+    return object;
+  }
+  
   public RuntimeArray allocateEmptyArray() {    
     //perform garbage collection prior to allocation
     if (heapPointer >= storageLimit) {
@@ -86,6 +99,18 @@ public class HeapAllocator {
     
     return array;
   }
+  
+  public RuntimeChannel allocateChannel(int capacity) {    
+    //perform garbage collection prior to allocation
+    if (heapPointer >= storageLimit) {
+      throw new IllegalStateException("Out of memory when allocating channel!");
+    }
+    
+    final RuntimeChannel channel = new RuntimeChannel(capacity);
+    heapPointer++;
+    
+    return channel;
+  }
 
   
   public RuntimeInteger allocateInt(long value) {
@@ -141,7 +166,11 @@ public class HeapAllocator {
                                               Map<String, Integer> keywordIndexes, 
                                               int varArgIndex,
                                               int keywordVarArgIndex,
-                                              ContextualInstr [] instrs, 
+                                              int localVarCount,
+                                              int maxStackDepth,
+                                              int [] code,
+                                              int [] exceptionJumps,
+                                              int [] positions,
                                               int [] captures) {
     //perform garbage collection prior to allocation
     if (heapPointer >= storageLimit) {
@@ -153,7 +182,11 @@ public class HeapAllocator {
                                                                keywordIndexes, 
                                                                varArgIndex, 
                                                                keywordVarArgIndex, 
-                                                               instrs, 
+                                                               localVarCount,
+                                                               maxStackDepth,
+                                                               code, 
+                                                               exceptionJumps,
+                                                               positions,
                                                                captures);
     //storage.add(new WeakReference<>(codeObject));
     heapPointer++;
@@ -0,0 +1,366 @@
+package jg.sh.runtime.jit;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import jg.sh.compile.instrs.OpCode;
+import jg.sh.runtime.objects.RuntimeCodeObject;
+import jg.sh.runtime.objects.RuntimeInstance;
+import jg.sh.runtime.objects.literals.RuntimeInteger;
+
+/**
+ * Compiles hot RuntimeCodeObjects into JVM classes, so that HotSpot can
+ * optimize them as it would any Java method.
+ *
+ * This is a baseline compiler: each reachable instruction is translated, in order,
+ * to its JVM equivalent. The Seahorse operand stack maps to the JVM operand stack
+ * and local variables map to JVM local variables.
+ *
+ * Only integer functions are supported: functions whose values are all integers,
+ * with only positional parameters and made up of the following instructions:
+ *   - LOAD, STORE, LOADC (of integer constants) and POP
+ *   - ADD, SUB and MUL
+ *   - LESS, GREAT, LESSE and GREATE, when immediately followed by JUMPF or JUMPT
+ *   - JUMP and RET
+ * (as well as their quickened forms and superinstructions, which execute the same).
+ *
+ * Since such functions never call other functions, they never need to
+ * suspend their Fiber, and so never need to leave compiled code. Functions using any other
+ * instruction - or with try-catch blocks - aren't compiled, and are always interpreted.
+ *
+ * Compiled code only assumes that its parameters are integers, which
+ * is checked by CompiledFunction before entering compiled code.
+ *
+ * @author Jose
+ */
+public final class BaselineCompiler {
+
+  private static Logger LOG = LogManager.getLogger(BaselineCompiler.class);
+
+  private static final String CLASS_NAME_PREFIX = "jg/sh/runtime/jit/Compiled$";
+
+  /*
+   * JVM opcodes used by the compiler
+   */
+  private static final int LCONST_0 = 0x09;
+  private static final int BIPUSH = 0x10;
+  private static final int SIPUSH = 0x11;
+  private static final int LDC2_W = 0x14;
+  private static final int LLOAD = 0x16;
+  private static final int ALOAD_1 = 0x2b;
+  private static final int LALOAD = 0x2f;
+  private static final int LSTORE = 0x37;
+  private static final int POP2 = 0x58;
+  private static final int LADD = 0x61;
+  private static final int LSUB = 0x65;
+  private static final int LMUL = 0x69;
+  private static final int LCMP = 0x94;
+  private static final int IFLT = 0x9b;
+  private static final int IFGE = 0x9c;
+  private static final int IFGT = 0x9d;
+  private static final int IFLE = 0x9e;
+  private static final int GOTO = 0xa7;
+  private static final int LRETURN = 0xad;
+  private static final int WIDE = 0xc4;
+
+  /*
+   * Branch offsets are 16-bits, which limits the size of compiled code
+   */
+  private static final int MAX_CODE_SIZE = Short.MAX_VALUE;
+
+  private static final AtomicInteger CLASS_COUNTER = new AtomicInteger();
+
+  private BaselineCompiler() {}
+
+  /**
+   * Compiles a RuntimeCodeObject
+   * @param codeObject - the RuntimeCodeObject to compile
+   * @param constants - the constant table of the RuntimeCodeObject's module
+   * @return the CompiledFunction, or null if the RuntimeCodeObject isn't supported
+   */
+  public static CompiledFunction compile(RuntimeCodeObject codeObject, RuntimeInstance [] constants) {
+    if (codeObject.getCaptures().length > 0 ||
+        codeObject.getVarArgIndex() >= 0 ||
+        codeObject.getKeywordVarArgIndex() >= 0 ||
+        !codeObject.getKeywordIndexes().isEmpty() ||
+        !codeObject.getSignature().getKeywordParams().isEmpty()) {
+      return null;
+    }
+
+    final ClassFileWriter classFile = new ClassFileWriter();
+    final byte [] code = translate(codeObject, constants, classFile);
+    if (code == null) {
+      LOG.info("Not compiling unsupported code object: "+codeObject.getBoundName());
+      return null;
+    }
+
+    final String className = CLASS_NAME_PREFIX + CLASS_COUNTER.incrementAndGet();
+    final byte [] classBytes = classFile.toClassFile(className,
+                                                     code,
+                                                     codeObject.getMaxStackDepth() * 2 + 4,
+                                                     2 + codeObject.getLocalVarCount() * 2);
+
+    try {
+      //A class loader per class, so that compiled code can be unloaded along with its code object
+      final JitClassLoader loader = new JitClassLoader(BaselineCompiler.class.getClassLoader());
+      final Class<?> compiledClass = loader.define(className.replace('/', '.'), classBytes);
+      final CompiledCode compiledCode = (CompiledCode) compiledClass.getConstructor().newInstance();
+
+      LOG.info("Compiled code object: "+codeObject.getBoundName()+" as "+className);
+      return new CompiledFunction(compiledCode,
+                                  codeObject.getSignature().getPositionalParamCount(),
+                                  codeObject.getLocalVarCount());
+    } catch (ReflectiveOperationException | LinkageError e) {
+      LOG.warn("Couldn't load compiled code object: "+codeObject.getBoundName(), e);
+      return null;
+    }
+  }
+
+  /**
+   * Translates the instructions of a RuntimeCodeObject to JVM bytecode.
+   * @return the bytecode, or null if the RuntimeCodeObject has unsupported instructions
+   */
+  private static byte [] translate(RuntimeCodeObject codeObject,
+                                   RuntimeInstance [] constants,
+                                   ClassFileWriter classFile) {
+    final int instrCount = codeObject.getInstrCount();
+    final int localVarCount = codeObject.getLocalVarCount();
+    final int paramCount = codeObject.getSignature().getPositionalParamCount();
+    final int [] exceptionJumps = codeObject.getExceptionJumps();
+
+    final boolean [] reachable = findReachable(codeObject);
+    if (reachable == null) {
+      return null;
+    }
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    //Copy parameters into JVM locals, and zero the rest (as the JVM verifier requires)
+    for (int i = 2; i < localVarCount; i++) {
+      if (i < paramCount + 2) {
+        out.write(ALOAD_1);
+        pushInt(out, i);
+        out.write(LALOAD);
+      }
+      else {
+        out.write(LCONST_0);
+      }
+      localInstr(out, LSTORE, i);
+    }
+
+    //The bytecode offset of each instruction
+    final int [] offsets = new int[instrCount];
+
+    //Jumps fused with their preceding comparison, which can't be branched to
+    final boolean [] fused = new boolean[instrCount];
+
+    //Branches to patch, as pairs of <offset of branch opcode, target instruction index>
+    final List<int []> branches = new ArrayList<>();
+
+    for (int i = 0; i < instrCount; i++) {
+      offsets[i] = out.size();
+
+      if (!reachable[i]) {
+        continue;
+      }
+
+      if (exceptionJumps[i] >= 0) {
+        return null;
+      }
+
+      final OpCode op = OpCode.toCompiled(OpCode.fromOrdinal(codeObject.getCode()[i * RuntimeCodeObject.INSTR_WIDTH]));
+      final int arg = codeObject.getCode()[i * RuntimeCodeObject.INSTR_WIDTH + 1];
+
+      switch (op) {
+        case LABEL:
+        case COMMENT:
+        case PASS:
+          break;
+        case LOAD:
+        case STORE: {
+          if (arg < 2 || arg >= localVarCount) {
+            //The function and self aren't integers
+            return null;
+          }
+          localInstr(out, op == OpCode.LOAD ? LLOAD : LSTORE, arg);
+          break;
+        }
+        case LOADC: {
+          final RuntimeInstance constant = constants[arg];
+          if (!(constant instanceof RuntimeInteger)) {
+            return null;
+          }
+          final int index = classFile.longConstant(((RuntimeInteger) constant).getValue());
+          out.write(LDC2_W);
+          out.write(index >> 8);
+          out.write(index);
+          break;
+        }
+        case POP:
+          out.write(POP2);
+          break;
+        case ADD:
+          out.write(LADD);
+          break;
+        case SUB:
+          out.write(LSUB);
+          break;
+        case MUL:
+          out.write(LMUL);
+          break;
+        case LESS:
+        case GREAT:
+        case LESSE:
+        case GREATE: {
+          //Comparisons are only supported when fused with the following jump
+          if (i + 1 >= instrCount) {
+            return null;
+          }
+
+          final OpCode jump = OpCode.fromOrdinal(codeObject.getCode()[(i + 1) * RuntimeCodeObject.INSTR_WIDTH]);
+          final int target = codeObject.getCode()[(i + 1) * RuntimeCodeObject.INSTR_WIDTH + 1];
+          if ((jump != OpCode.JUMPF && jump != OpCode.JUMPT) || exceptionJumps[i + 1] >= 0) {
+            return null;
+          }
+
+          out.write(LCMP);
+          branches.add(new int[]{out.size(), target});
+          out.write(branchOpcode(op, jump == OpCode.JUMPT));
+          out.write(0);
+          out.write(0);
+
+          //Skip over the jump, as it's been fused
+          i++;
+          offsets[i] = out.size();
+          fused[i] = true;
+          break;
+        }
+        case JUMP: {
+          branches.add(new int[]{out.size(), arg});
+          out.write(GOTO);
+          out.write(0);
+          out.write(0);
+          break;
+        }
+        case RET:
+          out.write(LRETURN);
+          break;
+        default:
+          return null;
+      }
+    }
+
+    final byte [] code = out.toByteArray();
+    if (code.length > MAX_CODE_SIZE) {
+      return null;
+    }
+
+    //Patch branch offsets, which are relative to the branch opcode
+    for (int [] branch : branches) {
+      if (fused[branch[1]]) {
+        return null;
+      }
+      final int relative = offsets[branch[1]] - branch[0];
+      code[branch[0] + 1] = (byte) (relative >> 8);
+      code[branch[0] + 2] = (byte) relative;
+    }
+
+    return code;
+  }
+
+  /**
+   * Finds the instructions reachable from the first instruction, following jumps.
+   *
+   * Falling off the end of the instructions can't be compiled, and so returns null.
+   */
+  private static boolean [] findReachable(RuntimeCodeObject codeObject) {
+    final int [] code = codeObject.getCode();
+    final int instrCount = codeObject.getInstrCount();
+    final boolean [] reachable = new boolean[instrCount];
+
+    final Deque<Integer> worklist = new ArrayDeque<>();
+    worklist.push(0);
+
+    while (!worklist.isEmpty()) {
+      final int index = worklist.pop();
+      if (index >= instrCount) {
+        return null;
+      }
+      if (reachable[index]) {
+        continue;
+      }
+      reachable[index] = true;
+
+      final OpCode op = OpCode.toCompiled(OpCode.fromOrdinal(code[index * RuntimeCodeObject.INSTR_WIDTH]));
+      final int arg = code[index * RuntimeCodeObject.INSTR_WIDTH + 1];
+
+      if (op == OpCode.JUMP || op == OpCode.JUMPF || op == OpCode.JUMPT) {
+        worklist.push(arg);
+      }
+      if (op != OpCode.JUMP && op != OpCode.RET && op != OpCode.RETE) {
+        worklist.push(index + 1);
+      }
+    }
+
+    return reachable;
+  }
+
+  /**
+   * Returns the JVM branch opcode that follows LCMP for a comparison
+   * @param comparison - the comparison OpCode
+   * @param branchIfTrue - whether to branch if the comparison is true (JUMPT) or false (JUMPF)
+   */
+  private static int branchOpcode(OpCode comparison, boolean branchIfTrue) {
+    switch (comparison) {
+      case LESS:
+        return branchIfTrue ? IFLT : IFGE;
+      case GREAT:
+        return branchIfTrue ? IFGT : IFLE;
+      case LESSE:
+        return branchIfTrue ? IFLE : IFGT;
+      case GREATE:
+        return branchIfTrue ? IFGE : IFLT;
+      default:
+        throw new IllegalArgumentException("Not a comparison: "+comparison);
+    }
+  }
+
+  /**
+   * Writes a LLOAD/LSTORE for a Seahorse local variable.
+   *
+   * JVM local 0 is "this" and 1 is the locals array. Seahorse local variable i
+   * is at JVM local 2 + i * 2 (as longs take two slots).
+   */
+  private static void localInstr(ByteArrayOutputStream out, int opcode, int localVar) {
+    final int slot = 2 + localVar * 2;
+    if (slot <= 0xFF) {
+      out.write(opcode);
+      out.write(slot);
+    }
+    else {
+      out.write(WIDE);
+      out.write(opcode);
+      out.write(slot >> 8);
+      out.write(slot);
+    }
+  }
+
+  private static void pushInt(ByteArrayOutputStream out, int value) {
+    if (value <= Byte.MAX_VALUE) {
+      out.write(BIPUSH);
+      out.write(value);
+    }
+    else {
+      out.write(SIPUSH);
+      out.write(value >> 8);
+      out.write(value);
+    }
+  }
+}
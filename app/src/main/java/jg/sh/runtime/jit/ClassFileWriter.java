@@ -0,0 +1,229 @@
+package jg.sh.runtime.jit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes the JVM class file of a class implementing CompiledCode.
+ *
+ * This is a minimal class file writer: the class only has a no-arg constructor
+ * and the invoke() method, whose bytecode is given by BaselineCompiler.
+ *
+ * Classes are written with version 49.0, so no StackMapTable is needed and
+ * the JVM verifies them by type inference.
+ *
+ * @author Jose
+ */
+final class ClassFileWriter {
+
+  private static final int MAGIC = 0xCAFEBABE;
+  private static final int MAJOR_VERSION = 49;
+
+  private static final int ACC_PUBLIC = 0x0001;
+  private static final int ACC_FINAL = 0x0010;
+  private static final int ACC_SUPER = 0x0020;
+
+  /*
+   * Constant pool tags
+   */
+  private static final int CONSTANT_UTF8 = 1;
+  private static final int CONSTANT_LONG = 5;
+  private static final int CONSTANT_CLASS = 7;
+  private static final int CONSTANT_METHODREF = 10;
+  private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+  private static final String OBJECT_CLASS = "java/lang/Object";
+  private static final String COMPILED_CODE_INTERFACE = CompiledCode.class.getName().replace('.', '/');
+
+  private final ByteArrayOutputStream poolBytes;
+  private final DataOutputStream pool;
+  private final Map<String, Integer> poolIndexes;
+
+  /*
+   * Index of the next constant pool entry. The constant pool is 1-indexed
+   */
+  private int poolIndex;
+
+  ClassFileWriter() {
+    this.poolBytes = new ByteArrayOutputStream();
+    this.pool = new DataOutputStream(poolBytes);
+    this.poolIndexes = new HashMap<>();
+    this.poolIndex = 1;
+  }
+
+  int utf8(String value) {
+    final String key = "U:"+value;
+    Integer index = poolIndexes.get(key);
+    if (index == null) {
+      index = addEntry(key, 1);
+      write(() -> {
+        pool.writeByte(CONSTANT_UTF8);
+        pool.writeUTF(value);
+      });
+    }
+    return index;
+  }
+
+  int classRef(String internalName) {
+    final String key = "C:"+internalName;
+    Integer index = poolIndexes.get(key);
+    if (index == null) {
+      final int nameIndex = utf8(internalName);
+      index = addEntry(key, 1);
+      write(() -> {
+        pool.writeByte(CONSTANT_CLASS);
+        pool.writeShort(nameIndex);
+      });
+    }
+    return index;
+  }
+
+  /**
+   * Adds a long constant to the constant pool (which takes two entries)
+   * @param value - the long constant
+   * @return the index of the constant, to be used with ldc2_w
+   */
+  int longConstant(long value) {
+    final String key = "J:"+value;
+    Integer index = poolIndexes.get(key);
+    if (index == null) {
+      index = addEntry(key, 2);
+      write(() -> {
+        pool.writeByte(CONSTANT_LONG);
+        pool.writeLong(value);
+      });
+    }
+    return index;
+  }
+
+  int methodRef(String owner, String name, String descriptor) {
+    final String key = "M:"+owner+"."+name+descriptor;
+    Integer index = poolIndexes.get(key);
+    if (index == null) {
+      final int classIndex = classRef(owner);
+      final int nameIndex = utf8(name);
+      final int descIndex = utf8(descriptor);
+
+      final int nameAndTypeIndex = addEntry("N:"+name+descriptor, 1);
+      write(() -> {
+        pool.writeByte(CONSTANT_NAME_AND_TYPE);
+        pool.writeShort(nameIndex);
+        pool.writeShort(descIndex);
+      });
+
+      index = addEntry(key, 1);
+      write(() -> {
+        pool.writeByte(CONSTANT_METHODREF);
+        pool.writeShort(classIndex);
+        pool.writeShort(nameAndTypeIndex);
+      });
+    }
+    return index;
+  }
+
+  /**
+   * Writes out the class file
+   * @param className - the internal name of the class (ex: "jg/sh/runtime/jit/Foo")
+   * @param invokeCode - the bytecode of the invoke() method
+   * @param maxStack - the max operand stack size of the invoke() method
+   * @param maxLocals - the amount of local variable slots of the invoke() method
+   * @return the class file
+   */
+  byte [] toClassFile(String className, byte [] invokeCode, int maxStack, int maxLocals) {
+    //Constant pool entries must be added before the pool is written out
+    final int thisClass = classRef(className);
+    final int superClass = classRef(OBJECT_CLASS);
+    final int interfaceClass = classRef(COMPILED_CODE_INTERFACE);
+    final int objectInit = methodRef(OBJECT_CLASS, "<init>", "()V");
+    final int initName = utf8("<init>");
+    final int initDesc = utf8("()V");
+    final int invokeName = utf8("invoke");
+    final int invokeDesc = utf8("([J)J");
+    final int codeAttr = utf8("Code");
+
+    //Constructor: aload_0, invokespecial Object.<init>, return
+    final byte [] initCode = {0x2a, (byte) 0xb7, (byte) (objectInit >> 8), (byte) objectInit, (byte) 0xb1};
+
+    final ByteArrayOutputStream classBytes = new ByteArrayOutputStream();
+    final DataOutputStream out = new DataOutputStream(classBytes);
+    try {
+      out.writeInt(MAGIC);
+      out.writeShort(0);
+      out.writeShort(MAJOR_VERSION);
+
+      out.writeShort(poolIndex);
+      pool.flush();
+      poolBytes.writeTo(out);
+
+      out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+      out.writeShort(thisClass);
+      out.writeShort(superClass);
+
+      out.writeShort(1);
+      out.writeShort(interfaceClass);
+
+      //No fields
+      out.writeShort(0);
+
+      out.writeShort(2);
+      writeMethod(out, initName, initDesc, codeAttr, initCode, 1, 1);
+      writeMethod(out, invokeName, invokeDesc, codeAttr, invokeCode, maxStack, maxLocals);
+
+      //No class attributes
+      out.writeShort(0);
+      out.flush();
+    } catch (IOException e) {
+      //Can't happen when writing to a ByteArrayOutputStream
+      throw new Error(e);
+    }
+    return classBytes.toByteArray();
+  }
+
+  private static void writeMethod(DataOutputStream out,
+                                  int nameIndex,
+                                  int descIndex,
+                                  int codeAttrIndex,
+                                  byte [] code,
+                                  int maxStack,
+                                  int maxLocals) throws IOException {
+    out.writeShort(ACC_PUBLIC);
+    out.writeShort(nameIndex);
+    out.writeShort(descIndex);
+
+    //Only the Code attribute
+    out.writeShort(1);
+    out.writeShort(codeAttrIndex);
+    out.writeInt(2 + 2 + 4 + code.length + 2 + 2);
+    out.writeShort(maxStack);
+    out.writeShort(maxLocals);
+    out.writeInt(code.length);
+    out.write(code);
+
+    //No exception table, nor code attributes
+    out.writeShort(0);
+    out.writeShort(0);
+  }
+
+  private int addEntry(String key, int size) {
+    final int index = poolIndex;
+    poolIndexes.put(key, index);
+    poolIndex += size;
+    return index;
+  }
+
+  private interface PoolWrite {
+    void write() throws IOException;
+  }
+
+  private static void write(PoolWrite write) {
+    try {
+      write.write();
+    } catch (IOException e) {
+      //Can't happen when writing to a ByteArrayOutputStream
+      throw new Error(e);
+    }
+  }
+}
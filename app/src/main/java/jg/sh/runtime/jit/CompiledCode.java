@@ -0,0 +1,18 @@
+package jg.sh.runtime.jit;
+
+/**
+ * The interface implemented by all JVM classes generated by BaselineCompiler.
+ *
+ * @author Jose
+ */
+public interface CompiledCode {
+
+  /**
+   * Runs the compiled code
+   * @param locals - the initial values of the function's local variables
+   *                 (the first two - the function and self - are unused)
+   * @return the return value of the function
+   */
+  public long invoke(long [] locals);
+
+}
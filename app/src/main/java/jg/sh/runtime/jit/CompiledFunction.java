@@ -0,0 +1,81 @@
+package jg.sh.runtime.jit;
+
+import jg.sh.runtime.objects.ArgVector;
+import jg.sh.runtime.objects.literals.RuntimeInteger;
+
+/**
+ * A RuntimeCodeObject compiled by BaselineCompiler.
+ *
+ * Compiled code assumes that all of its parameters are integers. So, before
+ * invoking it, callers must check if it accepts their arguments. If it doesn't,
+ * the function should be interpreted as usual.
+ *
+ * @author Jose
+ */
+public class CompiledFunction {
+
+  private final CompiledCode code;
+  private final int paramCount;
+  private final int localVarCount;
+
+  CompiledFunction(CompiledCode code, int paramCount, int localVarCount) {
+    this.code = code;
+    this.paramCount = paramCount;
+    this.localVarCount = localVarCount;
+  }
+
+  /**
+   * Checks if this CompiledFunction can be invoked with the given arguments
+   * @param args - the arguments (without the function and self)
+   * @return true if the arguments are all positional integers matching the function's parameters
+   */
+  public boolean accepts(ArgVector args) {
+    if (args.hasKeywordArgs() || args.getPositionalCount() != paramCount) {
+      return false;
+    }
+
+    for (int i = 0; i < paramCount; i++) {
+      if (!(args.positionalAt(i) instanceof RuntimeInteger)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the amount of positional parameters of the function
+   */
+  public int getParamCount() {
+    return paramCount;
+  }
+
+  /**
+   * @return an array to hold the local variables of the compiled code, 
+   *         with the parameters to be set starting at index 2
+   */
+  public long [] makeLocals() {
+    return new long[localVarCount];
+  }
+
+  /**
+   * Invokes the compiled code with its local variables, as made by makeLocals()
+   * @param locals - the local variables, with the parameters set
+   * @return the return value of the function
+   */
+  public long invoke(long [] locals) {
+    return code.invoke(locals);
+  }
+
+  /**
+   * Invokes the compiled code. The arguments must be accepted by this CompiledFunction (see accepts())
+   * @param args - the arguments (without the function and self)
+   * @return the return value of the function
+   */
+  public long invoke(ArgVector args) {
+    final long [] locals = new long[localVarCount];
+    for (int i = 0; i < paramCount; i++) {
+      locals[i + 2] = ((RuntimeInteger) args.positionalAt(i)).getValue();
+    }
+    return code.invoke(locals);
+  }
+}
@@ -0,0 +1,17 @@
+package jg.sh.runtime.jit;
+
+/**
+ * Defines the classes generated by BaselineCompiler.
+ *
+ * @author Jose
+ */
+final class JitClassLoader extends ClassLoader {
+
+  JitClassLoader(ClassLoader parent) {
+    super(parent);
+  }
+
+  Class<?> define(String className, byte [] classFile) {
+    return defineClass(className, classFile, 0, classFile.length);
+  }
+}
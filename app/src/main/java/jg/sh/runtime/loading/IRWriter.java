@@ -6,18 +6,10 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.util.Map;
-import java.util.Map.Entry;
 
 import jg.sh.SeaHorseInterpreter;
 import jg.sh.common.FunctionSignature;
-import jg.sh.compile.instrs.ArgInstr;
-import jg.sh.compile.instrs.CommentInstr;
-import jg.sh.compile.instrs.Instruction;
-import jg.sh.compile.instrs.LabelInstr;
-import jg.sh.compile.instrs.LoadCellInstr;
-import jg.sh.compile.instrs.NoArgInstr;
-import jg.sh.compile.instrs.StoreCellInstr;
+import jg.sh.compile.instrs.OpCode;
 import jg.sh.runtime.objects.RuntimeCodeObject;
 import jg.sh.runtime.objects.RuntimeDataRecord;
 import jg.sh.runtime.objects.RuntimeInstance;
@@ -91,10 +83,11 @@ public final class IRWriter {
     final DataOutputStream ds = new DataOutputStream(outputStream);
     try {
       ds.writeLong(SeaHorseInterpreter.VERSION);
-      ds.write(encodeConstantPool(module.getConstantMap()));
-      ds.writeInt(module.getModuleCodeObject().getInstrs().length);
-      for (ContextualInstr instr : module.getModuleCodeObject().getInstrs()) {
-        ds.write(encodeInstr(instr));
+      ds.write(encodeConstantPool(module.getConstants()));
+      final RuntimeCodeObject moduleCode = module.getModuleCodeObject();
+      ds.writeInt(moduleCode.getInstrCount());
+      for (int i = 0; i < moduleCode.getInstrCount(); i++) {
+        ds.write(encodeInstr(moduleCode, i));
       }
     } catch (IOException e) {
       //Should never happen.
@@ -104,7 +97,7 @@ public final class IRWriter {
     return outputStream.toByteArray();
   }
   
-  public static byte [] encodeConstantPool(Map<Integer, RuntimeInstance> pool) {
+  public static byte [] encodeConstantPool(RuntimeInstance [] pool) {
     final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
     final DataOutputStream ds = new DataOutputStream(outputStream);
 
@@ -122,6 +115,8 @@ public final class IRWriter {
      *                     <4 bytes as keyword param length> <UTF-8 encoding of each keyword param>
      *                     <-1 byte to signify start of variatic arg>
      *                     <true or false for variabdic arg support. as byte>
+     *        - Local variable count (4 bytes)
+     *        - Max operand stack depth (4 bytes)
      *        - Instruction count (4 bytes)
      *        - Instructions of this code object. (see instruction encoding below)
      *   Data Records: 5 (as a byte)
@@ -132,9 +127,19 @@ public final class IRWriter {
      *                      <code object encoding length><code object encoding>
      */
     try {
-      ds.writeInt(pool.size());
-      for(Entry<Integer, RuntimeInstance> instance : pool.entrySet()) {
-        ds.write(encodePoolComponent(instance.getValue()));
+      //Slots of compile-time only components (like error handling records) are empty
+      int componentCount = 0;
+      for(RuntimeInstance instance : pool) {
+        if (instance != null) {
+          componentCount++;
+        }
+      }
+      
+      ds.writeInt(componentCount);
+      for(RuntimeInstance instance : pool) {
+        if (instance != null) {
+          ds.write(encodePoolComponent(instance));
+        }
       }
     } catch (IOException e) {
       //Should never happen.
@@ -162,6 +167,8 @@ public final class IRWriter {
      *                     <4 bytes as keyword param length> <UTF-8 encoding of each keyword param>
      *                     <-1 byte to signify start of variatic arg>
      *                     <true or false for variabdic arg support. as byte>
+     *        - Local variable count (4 bytes)
+     *        - Max operand stack depth (4 bytes)
      *        - Instruction count (4 bytes)
      *        - Instructions of this code object. (see instruction encoding below)
      *   Data Records: 5 (as a byte)
@@ -257,6 +264,8 @@ public final class IRWriter {
      *                     <4 bytes as keyword param length> <UTF-8 encoding of each keyword param>
      *                     <-1 byte to signify start of variatic arg>
      *                     <true or false for variabdic arg support. as byte>
+     *        - Local variable count (4 bytes)
+     *        - Max operand stack depth (4 bytes)
      *        - Instruction count (4 bytes)
      *        - Instructions of this code object. (see instruction encoding below)
      */
@@ -276,11 +285,16 @@ public final class IRWriter {
       final byte [] sigEncoding = encodeFuncSignature(codeObject.getSignature());
       ds.write(sigEncoding);
 
+      //Place local variable count
+      ds.writeInt(codeObject.getLocalVarCount());
+
+      //Place max operand stack depth
+      ds.writeInt(codeObject.getMaxStackDepth());
+
       //Place instructions
-      final ContextualInstr [] instrs = codeObject.getInstrs();
-      ds.writeInt(instrs.length);
-      for (ContextualInstr contextualInstr : instrs) {
-        ds.write(encodeInstr(contextualInstr));
+      ds.writeInt(codeObject.getInstrCount());
+      for (int i = 0; i < codeObject.getInstrCount(); i++) {
+        ds.write(encodeInstr(codeObject, i));
       }
 
     } catch (IOException e) {
@@ -323,89 +337,35 @@ public final class IRWriter {
     return outputStream.toByteArray();
   }
 
-  public static byte [] encodeInstr(ContextualInstr contextualInstr) {
-    final Instruction ogInstr = contextualInstr.getInstr();
-
+  public static byte [] encodeInstr(RuntimeCodeObject codeObject, int instrIndex) {
     /*
-     * Instruction encoding (for non-comment, parameterized and jump instructions):
+     * Instruction encoding:
        <byte (OpCode ordinal value)>
-       <4 bytes for integer argument>
+       <4 bytes for integer argument - 0 for no-arg instructions, the instruction index for jumps>
        <4 bytes for exception jump>
        <4 bytes for start Line>
        <4 bytes for start column>
        <4 bytes for end line>
        <4 bytes for end column>
 
-      for no-arg instruction:
-       <byte (OpCode ordinal value)>
-       <4 bytes for exception jump>
-       <4 bytes for start Line>
-       <4 bytes for start column>
-       <4 bytes for end line>
-       <4 bytes for end column>
+      Labels and comments are encoded as no-arg instructions. 
 
-      Comment instruction encoding:
-       <byte (OpCode ordinal value)>
-       <4 bytes for comment length as UTF-8 byte count>
-       <UTF 8 encoding of comment>
-       <4 bytes for exception jump>
-       <4 bytes for start Line>
-       <4 bytes for start column>
-       <4 bytes for end line>
-       <4 bytes for end column>
-
-      For label instructions:
-       <byte (OpCode ordinal value)>
-       <4 bytes for label length as UTF-8 byte count>
-       <UTF 8 encoding of label>
-       <4 bytes for exception jump>
-       <4 bytes for start Line>
-       <4 bytes for start column>
-       <4 bytes for end line>
-       <4 bytes for end column>
+      The OpCode is written as the compiler emitted it - not in its quickened or 
+      fused form - as the code object may have already been prepared for execution.
      */
 
     final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
     final DataOutputStream ds = new DataOutputStream(outputStream);
 
-    try {
-      //Write out ordinal
-      ds.writeByte(ogInstr.getOpCode().ordinal());
+    final int [] code = codeObject.getCode();
+    final int [] positions = codeObject.getPositions();
+    final int codeIndex = instrIndex * RuntimeCodeObject.INSTR_WIDTH;
+    final int positionIndex = instrIndex * RuntimeCodeObject.POSITION_WIDTH;
 
-      if (ogInstr instanceof ArgInstr) {
-        ArgInstr instr = (ArgInstr) ogInstr;
-        ds.writeInt(instr.getArgument());
-      }
-      else if (ogInstr instanceof CommentInstr) {
-        CommentInstr instr = (CommentInstr) ogInstr;
-        final byte [] commentBytes = instr.getContent().getBytes(StandardCharsets.UTF_8);
-        ds.writeInt(commentBytes.length);
-        ds.write(commentBytes);
-      }
-      else if (ogInstr instanceof IndexedJumpInstr) {
-        IndexedJumpInstr instr = (IndexedJumpInstr) ogInstr;
-        ds.writeInt(instr.getJumpIndex());
-      }
-      else if (ogInstr instanceof LabelInstr) {
-        LabelInstr instr = (LabelInstr) ogInstr;
-        final byte [] labelBytes = instr.getName().getBytes(StandardCharsets.UTF_8);
-        ds.writeInt(labelBytes.length);
-        ds.write(labelBytes);
-      }
-      else if (ogInstr instanceof LoadCellInstr) {
-        LoadCellInstr instr = (LoadCellInstr) ogInstr;
-        ds.writeInt(instr.getIndex());
-      }
-      else if (ogInstr instanceof NoArgInstr) {
-        //do nothing. There's no argument
-      }
-      else if (ogInstr instanceof StoreCellInstr) {
-        StoreCellInstr instr = (StoreCellInstr) ogInstr;
-        ds.writeInt(instr.getIndex());
-      }
-      else {
-        throw new IllegalArgumentException(ogInstr.getClass()+" is not an encodable instruction.");
-      }
+    try {
+      //Write out ordinal and argument
+      ds.writeByte(OpCode.toCompiled(OpCode.fromOrdinal(code[codeIndex])).ordinal());
+      ds.writeInt(code[codeIndex + 1]);
 
       /*
        * write:
@@ -415,11 +375,11 @@ public final class IRWriter {
        * - end line
        * - enc column
        */
-      ds.writeInt(contextualInstr.getExceptionJumpIndex());
-      ds.writeInt(ogInstr.getStart().line);
-      ds.writeInt(ogInstr.getStart().column);
-      ds.writeInt(ogInstr.getEnd().line);
-      ds.writeInt(ogInstr.getEnd().column);
+      ds.writeInt(codeObject.getExceptionJumps()[instrIndex]);
+      ds.writeInt(positions[positionIndex]);
+      ds.writeInt(positions[positionIndex + 1]);
+      ds.writeInt(positions[positionIndex + 2]);
+      ds.writeInt(positions[positionIndex + 3]);
     } catch (IOException e) {
       //Should never happen.
       throw new IllegalStateException(e);
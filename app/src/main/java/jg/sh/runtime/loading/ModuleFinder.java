@@ -50,9 +50,13 @@ import jg.sh.runtime.objects.callable.RuntimeInternalCallable;
 import jg.sh.runtime.threading.fiber.Fiber;
 import jg.sh.compile.ObjectFile;
 import jg.sh.compile.SeahorseCompiler;
+import jg.sh.compile.instrs.ArgInstr;
 import jg.sh.compile.instrs.Instruction;
 import jg.sh.compile.instrs.JumpInstr;
 import jg.sh.compile.instrs.LabelInstr;
+import jg.sh.compile.instrs.LoadCellInstr;
+import jg.sh.compile.instrs.OpCode;
+import jg.sh.compile.instrs.StoreCellInstr;
 import jg.sh.compile.pool.ConstantPool;
 import jg.sh.compile.pool.component.BoolConstant;
 import jg.sh.compile.pool.component.CodeObject;
@@ -73,6 +77,16 @@ public class ModuleFinder implements Markable {
   private final SeahorseCompiler compiler;
   private final Map<String, RuntimeModule> modules;
   
+  /*
+   * Only present if IOption.PROFILE_SEQUENCES is true
+   */
+  private final SequenceProfiler profiler;
+  
+  /*
+   * The JIT threshold given to code objects, or -1 if IOption.JIT is false
+   */
+  private final int jitThreshold;
+  
   private int gcMark;
   
   //private URLClassLoader classLoader;
@@ -82,6 +96,12 @@ public class ModuleFinder implements Markable {
     this.options = options;
     this.modules = new HashMap<>();  
     this.compiler = compiler;
+    this.profiler = options.containsKey(IOption.PROFILE_SEQUENCES) && (boolean) options.get(IOption.PROFILE_SEQUENCES) ? 
+                      new SequenceProfiler() : 
+                      null;
+    this.jitThreshold = options.containsKey(IOption.JIT) && (boolean) options.get(IOption.JIT) ? 
+                          (int) options.get(IOption.JIT_THRESHOLD) : 
+                          -1;
     //Add "system" module
     modules.put(SystemModule.SYSTEM_NAME, prepareSystemModule());  
   }
@@ -161,7 +181,7 @@ public class ModuleFinder implements Markable {
               
               //.shr file is newer. use shr!
               if((module = loadFromSHRFile(shrFile)) != null) {
-                RuntimeInstance moduleObject = allocator.allocateEmptyObject();
+                RuntimeInstance moduleObject = allocator.allocateModuleObject(module);
                 RuntimeCallable initCallable = allocator.allocateCallable(module, moduleObject, module.getModuleCodeObject(), new CellReference[0]);
                 module.setLoadingComponents(moduleObject, initCallable);
                 //update shrc file!
@@ -178,7 +198,7 @@ public class ModuleFinder implements Markable {
               //System.out.println("---- shr file is older, loading from shrc "+(module != null));
               
               if(module != null) {
-                RuntimeInstance moduleObject = allocator.allocateEmptyObject();
+                RuntimeInstance moduleObject = allocator.allocateModuleObject(module);
                 RuntimeCallable initCallable = allocator.allocateCallable(module, moduleObject, module.getModuleCodeObject(), new CellReference[0]);
                 module.setLoadingComponents(moduleObject, initCallable);
                 //System.out.println("---successfully loaded from shrc");
@@ -186,7 +206,7 @@ public class ModuleFinder implements Markable {
               }
               else if((module = loadFromSHRFile(shrFile)) != null){
                 //fall back to using shrFile if, for some reason, shrcFile couldn't be used
-                RuntimeInstance moduleObject = allocator.allocateEmptyObject();
+                RuntimeInstance moduleObject = allocator.allocateModuleObject(module);
                 RuntimeCallable initCallable = allocator.allocateCallable(module, moduleObject, module.getModuleCodeObject(), new CellReference[0]);
                 module.setLoadingComponents(moduleObject, initCallable);
                 
@@ -200,7 +220,7 @@ public class ModuleFinder implements Markable {
             }
         } 
         else if((module = loadFromSHRFile(shrFile)) != null){
-          RuntimeInstance moduleObject = allocator.allocateEmptyObject();
+          RuntimeInstance moduleObject = allocator.allocateModuleObject(module);
           RuntimeCallable initCallable = allocator.allocateCallable(module, moduleObject, module.getModuleCodeObject(), new CellReference[0]);
           module.setLoadingComponents(moduleObject, initCallable);
           
@@ -413,6 +433,14 @@ public class ModuleFinder implements Markable {
   public RuntimeModule getModule(String name) {
     return modules.get(name);
   }
+  
+  /**
+   * @return the SequenceProfiler of this ModuleFinder, or null 
+   *         if IOption.PROFILE_SEQUENCES isn't set to true
+   */
+  public SequenceProfiler getProfiler() {
+    return profiler;
+  }
     
   /**
    * Registers multiple CompiledFiles with this ModuleFinder
@@ -442,7 +470,7 @@ public class ModuleFinder implements Markable {
     
     RuntimeModule preparedModule = prepareModule(compiledFile);
     
-    RuntimeInstance moduleObject = allocator.allocateEmptyObject();
+    RuntimeInstance moduleObject = allocator.allocateModuleObject(preparedModule);
     RuntimeCallable initCallable = allocator.allocateCallable(preparedModule, 
                                                               moduleObject, 
                                                               preparedModule.getModuleCodeObject(), 
@@ -453,15 +481,17 @@ public class ModuleFinder implements Markable {
   }
   
   private RuntimeModule prepareModule(ObjectFile compiledFile) {
-    HashMap<Integer, RuntimeInstance> constantMap = new HashMap<>();
+    final RuntimeInstance [] constants = new RuntimeInstance[compiledFile.getPool().getPoolSize()];
     
-    LinkedHashMap<Integer, CodeObject> codeObjects = allocateConstants(constantMap, compiledFile.getPool());    
+    LinkedHashMap<Integer, CodeObject> codeObjects = allocateConstants(constants, compiledFile.getPool());    
     
     final CodeObject moduleCodeObject = new CodeObject(
         new FunctionSignature(0, Collections.emptySet()), 
         "$module_"+compiledFile.getName()+"_start",
         new HashMap<>(), 
         -1,-1,
+        2, //Only the callable and self slots, as module variables aren't locals
+        compiledFile.getModuleMaxStackDepth(),
         compiledFile.getModuleInstrs(), 
         new int[0]);
     codeObjects.put(-1, moduleCodeObject);
@@ -490,46 +520,94 @@ public class ModuleFinder implements Markable {
     //System.out.println("-----------------------------");
     
     List<RuntimeCodeObject> runtimeCodeObjects = contextualize(compiledFile.getPool(), 
-                                                               constantMap,
+                                                               constants,
                                                                allInstructions, 
                                                                codeObjectIndices, 
                                                                codeObjects);
     
+    /*
+     * When profiling, instructions are left unfused so that the
+     * profiler reports on the instructions as compiled.
+     */
+    for (RuntimeCodeObject codeObject : runtimeCodeObjects) {
+      if (profiler != null) {
+        profiler.profile(codeObject);
+      }
+      else {
+        SuperInstructions.fuse(codeObject);
+      }
+      
+      if (jitThreshold >= 0) {
+        codeObject.enableJit(jitThreshold);
+      }
+    }
+    
     /*
     for (int i = 0; i < runtimeCodeObjects.size(); i++) {
       System.out.println(" ----> RUNTIME CODE OBJECT: "+i);
       final RuntimeCodeObject codeObject = runtimeCodeObjects.get(i);
-      for(int c = 0; c < codeObject.getInstrs().length; c++) {
-        System.out.println("   ["+StringUtils.leftPadStr(c, ' ', 2)+"]  "+codeObject.getInstrs()[c]);
+      for(int c = 0; c < codeObject.getInstrCount(); c++) {
+        System.out.println("   ["+StringUtils.leftPadStr(c, ' ', 2)+"]  "+
+                           OpCode.fromOrdinal(codeObject.getCode()[c * RuntimeCodeObject.INSTR_WIDTH])+" "+
+                           codeObject.getCode()[c * RuntimeCodeObject.INSTR_WIDTH + 1]+" | "+
+                           codeObject.getExceptionJumps()[c]);
       }
     }
     */    
     RuntimeModule runtimeModule = new RuntimeModule(compiledFile.getName(), 
                                                     runtimeCodeObjects.get(runtimeCodeObjects.size() - 1), 
-                                                    constantMap);
+                                                    constants,
+                                                    assignVariableSlots(compiledFile.getPool(), allInstructions));
     return runtimeModule;
   }
   
+  /**
+   * Assigns each module variable its slot, which is the constant pool index of its name.
+   * 
+   * The IRCompiler gives every module variable name a single (deduplicated) 
+   * StringConstant, which LOADMV and STOREMV already have as their operand.
+   * @param pool - the ConstantPool of the module
+   * @param instrs - all instructions of the module
+   * @return the slots of the module's variables, by name
+   */
+  private Map<String, Integer> assignVariableSlots(ConstantPool pool, List<Instruction> instrs) {
+    final Map<String, Integer> variableSlots = new HashMap<>();
+    for (Instruction instr : instrs) {
+      int nameIndex = -1;
+      if (instr instanceof LoadCellInstr && instr.getOpCode() == OpCode.LOADMV) {
+        nameIndex = ((LoadCellInstr) instr).getIndex();
+      }
+      else if (instr instanceof StoreCellInstr && instr.getOpCode() == OpCode.STOREMV) {
+        nameIndex = ((StoreCellInstr) instr).getIndex();
+      }
+      
+      if (nameIndex >= 0) {
+        variableSlots.put(((StringConstant) pool.getComponent(nameIndex)).getValue(), nameIndex);
+      }
+    }
+    return variableSlots;
+  }
+  
   /**
    * Allocates non-code object constants
    * @param pool
    */
-  private LinkedHashMap<Integer, CodeObject> allocateConstants(Map<Integer, RuntimeInstance> constantMap,  ConstantPool pool) {  
+  private LinkedHashMap<Integer, CodeObject> allocateConstants(RuntimeInstance [] constants,  ConstantPool pool) {  
     LinkedHashMap<Integer, CodeObject> codeObjects = new LinkedHashMap<>();
     
     for (int i = 0; i < pool.getPoolSize(); i++) {
       PoolComponent component = pool.getComponent(i);
       if (component instanceof BoolConstant) {
-        constantMap.put(i, allocator.allocateBool(((BoolConstant) component).getValue()));
+        constants[i] = allocator.allocateBool(((BoolConstant) component).getValue());
       }
       else if (component instanceof FloatConstant) {
-        constantMap.put(i, allocator.allocateFloat(((FloatConstant) component).getValue()));
+        constants[i] = allocator.allocateFloat(((FloatConstant) component).getValue());
       }
       else if (component instanceof IntegerConstant) {
-        constantMap.put(i, allocator.allocateInt(((IntegerConstant) component).getValue()));
+        constants[i] = allocator.allocateInt(((IntegerConstant) component).getValue());
       }
       else if (component instanceof StringConstant) {
-        constantMap.put(i, allocator.allocateString(((StringConstant) component).getValue()));
+        constants[i] = allocator.allocateString(((StringConstant) component).getValue());
       }
       else if (component instanceof CodeObject) {
         CodeObject codeObject = (CodeObject) component;
@@ -541,7 +619,7 @@ public class ModuleFinder implements Markable {
   }
   
   private List<RuntimeCodeObject> contextualize(ConstantPool pool, 
-                                              Map<Integer, RuntimeInstance> constantMap,
+                                              RuntimeInstance [] constants,
                                               List<Instruction> rawInstrs, 
                                               int [][] codeObjectIndices, 
                                               LinkedHashMap<Integer, CodeObject> codeObjects){
@@ -549,7 +627,7 @@ public class ModuleFinder implements Markable {
     //Temporary class for typing error label to instructions
     class TempContextInstr {
       private final String errorLabel;
-      private Instruction instr;
+      private final Instruction instr;
       
       public TempContextInstr(String errorLabel, Instruction instr) {
         this.errorLabel = errorLabel;
@@ -605,7 +683,10 @@ public class ModuleFinder implements Markable {
         }
       }
       
-      final ContextualInstr [] contextualInstrs = new ContextualInstr[codeObject.getInstrs().size()];
+      final int instrCount = codeObject.getInstrs().size();
+      final int [] code = new int[instrCount * RuntimeCodeObject.INSTR_WIDTH];
+      final int [] exceptionJumps = new int[instrCount];
+      final int [] positions = new int[instrCount * RuntimeCodeObject.POSITION_WIDTH];
       
       for(int i = startIndex; i <= endIndex; i++) {
         TempContextInstr instr = tempContextInstrs.get(i);
@@ -621,17 +702,41 @@ public class ModuleFinder implements Markable {
           throw new Error("Unknown error jump label: "+instr.errorLabel+" | "+codeObjectJumps);
         }
         
+        /*
+         * Encode the instruction as <opcode ordinal> <operand>.
+         * Labels, comments and no-arg instructions have 0 as their operand.
+         */
+        int operand = 0;
         if (instr.instr instanceof JumpInstr) {
           JumpInstr jumpInstr = (JumpInstr) instr.instr;
           if (codeObjectJumps.containsKey(jumpInstr.getTargetLabel())) {
-            instr.instr = new IndexedJumpInstr(jumpInstr, codeObjectJumps.get(jumpInstr.getTargetLabel()));
+            operand = codeObjectJumps.get(jumpInstr.getTargetLabel());
           }
           else {
             throw new Error("Unknown error jump label: "+jumpInstr.getTargetLabel()+" | "+codeObjectJumps);
           }
         }
+        else if (instr.instr instanceof ArgInstr) {
+          operand = ((ArgInstr) instr.instr).getArgument();
+        }
+        else if (instr.instr instanceof LoadCellInstr) {
+          operand = ((LoadCellInstr) instr.instr).getIndex();
+        }
+        else if (instr.instr instanceof StoreCellInstr) {
+          operand = ((StoreCellInstr) instr.instr).getIndex();
+        }
         
-        contextualInstrs[i - startIndex] = new ContextualInstr(instr.instr, errorJumpIndex);
+        final int index = i - startIndex;
+        
+        code[index * RuntimeCodeObject.INSTR_WIDTH] = instr.instr.getOpCode().ordinal();
+        code[index * RuntimeCodeObject.INSTR_WIDTH + 1] = operand;
+        
+        exceptionJumps[index] = errorJumpIndex;
+        
+        positions[index * RuntimeCodeObject.POSITION_WIDTH] = instr.instr.getStart().line;
+        positions[index * RuntimeCodeObject.POSITION_WIDTH + 1] = instr.instr.getStart().column;
+        positions[index * RuntimeCodeObject.POSITION_WIDTH + 2] = instr.instr.getEnd().line;
+        positions[index * RuntimeCodeObject.POSITION_WIDTH + 3] = instr.instr.getEnd().column;
       }
       
       RuntimeCodeObject runtimeCodeObject = allocator.allocateCodeObject(codeObject.getBoundName(), 
@@ -639,9 +744,16 @@ public class ModuleFinder implements Markable {
                                                                          codeObject.getKeywordIndexes(), 
                                                                          codeObject.getVarArgIndex(),
                                                                          codeObject.getKeywordVarArgIndex(),
-                                                                         contextualInstrs, 
+                                                                         codeObject.getLocalVarCount(),
+                                                                         codeObject.getMaxStackDepth(),
+                                                                         code, 
+                                                                         exceptionJumps,
+                                                                         positions,
                                                                          codeObject.getCaptures());
-      constantMap.put(coEntry.getKey(), runtimeCodeObject);
+      //The module's own code object (at -1) isn't in the constant pool
+      if (coEntry.getKey() >= 0) {
+        constants[coEntry.getKey()] = runtimeCodeObject;
+      }
       runtimeCodeObjects.add(runtimeCodeObject);
       
       codeObjIndex++;
@@ -0,0 +1,47 @@
+package jg.sh.runtime.loading;
+
+import java.util.Collection;
+
+import jg.sh.runtime.exceptions.OperationException;
+import jg.sh.runtime.objects.AttrCache;
+import jg.sh.runtime.objects.RuntimeInstance;
+
+/**
+ * The object of a RuntimeModule, holding its module variables as attributes.
+ *
+ * Module variables are also held in their RuntimeModule's indexed slots, which
+ * LOADMV reads directly. A ModuleObject mirrors every attribute write onto those
+ * slots, so that both views stay consistent - whether the write comes from STOREMV,
+ * another module or native code.
+ *
+ * @author Jose
+ */
+public class ModuleObject extends RuntimeInstance {
+
+  private final RuntimeModule module;
+
+  public ModuleObject(RuntimeModule module) {
+    this.module = module;
+  }
+
+  @Override
+  public synchronized void setAttribute(String name, RuntimeInstance valueAddr, AttrModifier... modifiers) throws OperationException {
+    super.setAttribute(name, valueAddr, modifiers);
+    module.mirrorVariable(name, valueAddr);
+  }
+
+  @Override
+  public synchronized void setAttribute(String name, RuntimeInstance valueAddr, Collection<AttrModifier> modifiers) throws OperationException {
+    super.setAttribute(name, valueAddr, modifiers);
+    module.mirrorVariable(name, valueAddr);
+  }
+
+  /**
+   * Always misses, so that stores through an inline cache
+   * go through setAttribute() and are mirrored.
+   */
+  @Override
+  public boolean setCachedAttr(AttrCache cache, RuntimeInstance value) {
+    return false;
+  }
+}
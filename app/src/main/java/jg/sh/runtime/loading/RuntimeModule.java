@@ -1,6 +1,8 @@
 package jg.sh.runtime.loading;
 
+import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import jg.sh.runtime.alloc.Cleaner;
 import jg.sh.runtime.alloc.Markable;
@@ -20,7 +22,25 @@ public class RuntimeModule implements Markable {
   
   private final String name;
   private final RuntimeCodeObject moduleCodeObject;
-  private final Map<Integer, RuntimeInstance> constantMap;
+  
+  /*
+   * The module's constants, indexed by their constant pool index
+   */
+  private final RuntimeInstance [] constants;
+  
+  /*
+   * Module variables, each at the slot given by the constant 
+   * pool index of its name (which the compiler makes unique). 
+   * 
+   * These mirror the module object's attributes (see ModuleObject)
+   * 
+   * Module variables are written and read by whichever RunnerThreads run the module's 
+   * code, so slots are written with a release store and read with a volatile load. 
+   * A plain array gives no such ordering, letting a reader see a value before 
+   * the writes that initialized it.
+   */
+  private final AtomicReferenceArray<RuntimeInstance> variables;
+  private final Map<String, Integer> variableSlots;
   
   private Callable moduleCallable;
   private RuntimeInstance moduleObject;
@@ -30,10 +50,19 @@ public class RuntimeModule implements Markable {
   
   public RuntimeModule(String name, 
       RuntimeCodeObject codeObject,
-      Map<Integer, RuntimeInstance> constantMap) {
+      RuntimeInstance [] constants) {
+    this(name, codeObject, constants, Collections.emptyMap());
+  }
+  
+  public RuntimeModule(String name, 
+      RuntimeCodeObject codeObject,
+      RuntimeInstance [] constants,
+      Map<String, Integer> variableSlots) {
     this.name = name;
     this.moduleCodeObject = codeObject;
-    this.constantMap = constantMap;
+    this.constants = constants;
+    this.variables = new AtomicReferenceArray<>(constants.length);
+    this.variableSlots = variableSlots;
   }
   
   public void setLoadingComponents(RuntimeInstance moduleObject, Callable callable) {
@@ -49,8 +78,42 @@ public class RuntimeModule implements Markable {
     return moduleObject != null && moduleCallable != null && isLoaded;
   }
   
-  public Map<Integer, RuntimeInstance> getConstantMap() {
-    return constantMap;
+  /**
+   * Returns the constant table of this module, indexed by constant pool index.
+   * 
+   * Note: the returned array is this module's actual table, and shouldn't be modified.
+   * @return the constant table of this module
+   */
+  public RuntimeInstance [] getConstants() {
+    return constants;
+  }
+  
+  public RuntimeInstance getConstant(int index) {
+    return constants[index];
+  }
+  
+  /**
+   * Returns the module variable slots of this module, indexed by the constant 
+   * pool index of each variable's name. A slot is null if its variable hasn't been set yet.
+   * 
+   * Note: these are this module's actual slots, and shouldn't be modified.
+   * Module variables are set through the module object.
+   * @return the module variable slots of this module
+   */
+  public AtomicReferenceArray<RuntimeInstance> getVariables() {
+    return variables;
+  }
+  
+  /**
+   * Copies an attribute write on the module object onto its module variable slot, if it has one.
+   * @param name - the name of the attribute
+   * @param value - the new value of the attribute
+   */
+  void mirrorVariable(String name, RuntimeInstance value) {
+    final Integer slot = variableSlots.get(name);
+    if (slot != null) {
+      variables.lazySet(slot, value);
+    }
   }
   
   public RuntimeInstance getModuleObject() {
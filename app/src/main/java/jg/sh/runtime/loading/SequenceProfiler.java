@@ -0,0 +1,115 @@
+package jg.sh.runtime.loading;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import jg.sh.compile.instrs.OpCode;
+import jg.sh.runtime.objects.RuntimeCodeObject;
+
+/**
+ * Reports the most executed instruction sequences of a workload,
+ * which are candidates for superinstructions (see SuperInstructions).
+ *
+ * Profiled RuntimeCodeObjects count how many times each of their
+ * instructions is executed. As sequences without labels can't be jumped into,
+ * the amount of times a sequence is executed is the lowest count among its instructions.
+ *
+ * Counts are incremented without synchronization, and so are
+ * only approximate when a code object is ran by multiple threads.
+ *
+ * @author Jose
+ */
+public class SequenceProfiler {
+
+  /**
+   * Shortest and longest sequences reported
+   */
+  public static final int MIN_LENGTH = 2;
+  public static final int MAX_LENGTH = 4;
+
+  private final List<RuntimeCodeObject> codeObjects;
+
+  public SequenceProfiler() {
+    this.codeObjects = new ArrayList<>();
+  }
+
+  /**
+   * Enables execution counting on a RuntimeCodeObject and
+   * includes it in this profiler's report.
+   * @param codeObject - the RuntimeCodeObject to profile
+   */
+  public synchronized void profile(RuntimeCodeObject codeObject) {
+    codeObject.enableProfiling();
+    codeObjects.add(codeObject);
+  }
+
+  /**
+   * Computes the execution counts of all instruction sequences
+   * of the profiled RuntimeCodeObjects.
+   *
+   * Sequences don't span LABEL or COMMENT instructions, nor do they
+   * continue past unconditional jumps and returns.
+   *
+   * @return a map of sequences - as their OpCode names separated by spaces - to their execution counts
+   */
+  public synchronized Map<String, Long> getSequenceCounts() {
+    final Map<String, Long> sequences = new HashMap<>();
+
+    for (RuntimeCodeObject codeObject : codeObjects) {
+      final int [] code = codeObject.getCode();
+      final int [] counts = codeObject.getExecutionCounts();
+
+      for (int start = 0; start < counts.length; start++) {
+        final StringBuilder sequence = new StringBuilder();
+        long count = Long.MAX_VALUE;
+
+        for (int length = 1; length <= MAX_LENGTH && start + length <= counts.length; length++) {
+          final int index = start + length - 1;
+          //Quickened instructions are reported in their generic form
+          final OpCode op = OpCode.toGeneric(OpCode.fromOrdinal(code[index * RuntimeCodeObject.INSTR_WIDTH]));
+          if (op == OpCode.LABEL || op == OpCode.COMMENT) {
+            break;
+          }
+
+          sequence.append(length > 1 ? " " : "").append(op.name());
+          count = Math.min(count, counts[index]);
+
+          if (count == 0) {
+            break;
+          }
+
+          if (length >= MIN_LENGTH) {
+            sequences.merge(sequence.toString(), count, Long::sum);
+          }
+
+          if (op == OpCode.JUMP || op == OpCode.RET || op == OpCode.RETE) {
+            break;
+          }
+        }
+      }
+    }
+
+    return sequences;
+  }
+
+  /**
+   * Prints the most executed instruction sequences
+   * @param out - the PrintStream to print to
+   * @param top - the amount of sequences to print
+   */
+  public void report(PrintStream out, int top) {
+    final List<Entry<String, Long>> sequences = new ArrayList<>(getSequenceCounts().entrySet());
+    sequences.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+
+    out.println("---- Most executed instruction sequences ----");
+    for (int i = 0; i < Math.min(top, sequences.size()); i++) {
+      final Entry<String, Long> sequence = sequences.get(i);
+      out.println("  "+sequence.getValue()+" : "+sequence.getKey());
+    }
+    out.println("---------------------------------------------");
+  }
+}
@@ -0,0 +1,82 @@
+package jg.sh.runtime.loading;
+
+import jg.sh.compile.instrs.OpCode;
+import jg.sh.runtime.objects.RuntimeCodeObject;
+
+/**
+ * Fuses common instruction sequences of a RuntimeCodeObject
+ * into superinstructions (see OpCode for the list of superinstructions).
+ *
+ * Fusion rewrites only the first instruction of a matched sequence, leaving the
+ * rest of the sequence in place as the superinstruction's operands. As jumps
+ * always target LABEL instructions, a sequence without labels can never be
+ * jumped into - though it'd still run correctly if it were.
+ *
+ * The sequences fused were picked from the output of SequenceProfiler
+ * on loop and conditional heavy workloads.
+ *
+ * @author Jose
+ */
+public final class SuperInstructions {
+
+  private SuperInstructions() {}
+
+  /**
+   * Fuses the instruction sequences of a RuntimeCodeObject into superinstructions.
+   *
+   * This should be done before the code object is ran.
+   *
+   * @param codeObject - the RuntimeCodeObject whose instructions to fuse
+   * @return the amount of sequences fused
+   */
+  public static int fuse(RuntimeCodeObject codeObject) {
+    final int [] code = codeObject.getCode();
+    final int instrCount = codeObject.getInstrCount();
+
+    int fused = 0;
+
+    for (int i = 0; i + 3 < instrCount; i++) {
+      final OpCode first = opAt(code, i);
+      final OpCode second = opAt(code, i + 1);
+      final OpCode third = opAt(code, i + 2);
+      final OpCode fourth = opAt(code, i + 3);
+
+      if (first != OpCode.LOAD) {
+        continue;
+      }
+
+      OpCode superInstr = null;
+      if (second == OpCode.LOADC && isComparison(third) && fourth == OpCode.JUMPF) {
+        superInstr = OpCode.LOAD_LOADC_CMP_JUMPF;
+      }
+      else if (second == OpCode.LOAD && isArithmetic(third) && fourth == OpCode.STORE) {
+        superInstr = OpCode.LOAD_LOAD_ARITH_STORE;
+      }
+      else if (second == OpCode.LOADC && isArithmetic(third) && fourth == OpCode.STORE) {
+        superInstr = OpCode.LOAD_LOADC_ARITH_STORE;
+      }
+
+      if (superInstr != null) {
+        code[i * RuntimeCodeObject.INSTR_WIDTH] = superInstr.ordinal();
+        fused++;
+
+        //Skip over the rest of the sequence
+        i += 3;
+      }
+    }
+
+    return fused;
+  }
+
+  private static OpCode opAt(int [] code, int instrIndex) {
+    return OpCode.fromOrdinal(code[instrIndex * RuntimeCodeObject.INSTR_WIDTH]);
+  }
+
+  private static boolean isComparison(OpCode op) {
+    return op == OpCode.LESS || op == OpCode.GREAT || op == OpCode.LESSE || op == OpCode.GREATE;
+  }
+
+  private static boolean isArithmetic(OpCode op) {
+    return op == OpCode.ADD || op == OpCode.SUB || op == OpCode.MUL;
+  }
+}
@@ -1,25 +1,55 @@
 package jg.sh.runtime.objects;
 
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import jg.sh.runtime.alloc.Cleaner;
-import jg.sh.runtime.exceptions.OperationException;
+import jg.sh.runtime.exceptions.InvocationException;
+import jg.sh.runtime.objects.callable.Callable;
 
 /**
  * A vector of arguments for a function call.
+ *
+ * Positional arguments are held in an array with room at its front, as
+ * the callee and self object are added at the front of every ArgVector
+ * once it's passed to a function (see StackFrame.makeFrame()).
+ *
+ * Keyword arguments are held in a map that's only allocated once a
+ * keyword argument is actually set.
  */
 public class ArgVector extends RuntimeInstance {
-  
-  private List<RuntimeInstance> positionals;
-  
+
+  /*
+   * Room left at the front of the positionals for the callee and self object
+   */
+  private static final int FRONT_ROOM = 2;
+
+  private static final int INIT_CAPACITY = FRONT_ROOM + 4;
+
+  private RuntimeInstance [] positionals;
+
+  /*
+   * The positional arguments are at positionals[start, end)
+   */
+  private int start;
+  private int end;
+
+  private Map<String, RuntimeInstance> keywords;
+
   public ArgVector() {
-    this.positionals = new ArrayList<>();
+    this.positionals = new RuntimeInstance[INIT_CAPACITY];
+    this.start = FRONT_ROOM;
+    this.end = FRONT_ROOM;
   }
-  
+
   public ArgVector(RuntimeInstance ... initialPositionals) {
-    this.positionals = new ArrayList<>(Arrays.asList(initialPositionals));
+    this.positionals = new RuntimeInstance[FRONT_ROOM + initialPositionals.length];
+    this.start = FRONT_ROOM;
+    this.end = FRONT_ROOM + initialPositionals.length;
+    System.arraycopy(initialPositionals, 0, positionals, FRONT_ROOM, initialPositionals.length);
   }
 
   /**
@@ -29,30 +59,101 @@ public class ArgVector extends RuntimeInstance {
   public void seal(){}
 
   public void setKeywordArg(String keyword, RuntimeInstance value) {
-    try {
-      setAttribute(keyword, value);
-    } catch (OperationException e) {
-      /*
-       * Should never happen as ArgVectors are unsealable.
-       * If it does, the world is doomed. Panic!
-       */
-      throw new Error(e);
+    if (keywords == null) {
+      //Keyword arguments are kept in the order they're passed
+      keywords = new LinkedHashMap<>();
     }
+    keywords.put(keyword, value);
+  }
+
+  public boolean hasKeywordArg(String keyword) {
+    return keywords != null && keywords.containsKey(keyword);
+  }
+
+  public boolean hasKeywordArgs() {
+    return keywords != null && !keywords.isEmpty();
+  }
+
+  /**
+   * @return the keyword arguments of this ArgVector (which can't be modified)
+   */
+  public Map<String, RuntimeInstance> getKeywordArgs() {
+    return keywords == null ? Collections.emptyMap() : Collections.unmodifiableMap(keywords);
   }
 
   public void addAtFront(RuntimeInstance instance) {
-    positionals.add(0, instance);
+    if (start == 0) {
+      final RuntimeInstance [] newPositionals = new RuntimeInstance[positionals.length + FRONT_ROOM];
+      System.arraycopy(positionals, start, newPositionals, FRONT_ROOM, end - start);
+      end += FRONT_ROOM;
+      start = FRONT_ROOM;
+      positionals = newPositionals;
+    }
+    positionals[--start] = instance;
   }
-  
+
   public void addPositional(RuntimeInstance instance) {
-    positionals.add(instance);
+    if (end == positionals.length) {
+      positionals = Arrays.copyOf(positionals, positionals.length * 2);
+    }
+    positionals[end++] = instance;
   }
-  
-  public RuntimeInstance getPositional(int index) {
-    return positionals.get(index);
+
+  /**
+   * Retrieves a positional argument
+   * @param index - the index of the positional argument
+   * @return the positional argument at the given index
+   * @throws InvocationException - if there's no positional argument at the given index
+   */
+  public RuntimeInstance getPositional(int index) throws InvocationException {
+    if (index < 0 || index >= end - start) {
+      throw new InvocationException("No positional argument at index "+index+
+                                    " (only "+(end - start)+" given)", getCallee());
+    }
+    return positionals[start + index];
+  }
+
+  /**
+   * Retrieves a positional argument without checking if it exists.
+   * 
+   * This is only meant for loops bounded by getPositionalCount(). Otherwise,
+   * use getPositional().
+   * 
+   * @param index - the index of the positional argument, within [0, getPositionalCount())
+   * @return the positional argument at the given index
+   */
+  public RuntimeInstance positionalAt(int index) {
+    assert index >= 0 && index < end - start : "Positional index "+index+" out of "+(end - start);
+    return positionals[start + index];
   }
-  
+
+  public int getPositionalCount() {
+    return end - start;
+  }
+
+  /**
+   * @return the positional arguments of this ArgVector, as a view that can't be modified
+   */
   public List<RuntimeInstance> getPositionals() {
-    return positionals;
+    return Collections.unmodifiableList(Arrays.asList(positionals).subList(start, end));
+  }
+
+  /*
+   * The callee, if it's been added at the front (see InternalFunction.FUNC_INDEX)
+   */
+  private Callable getCallee() {
+    return end > start && positionals[start] instanceof Callable ? (Callable) positionals[start] : null;
+  }
+
+  @Override
+  public void gcMark(Cleaner allocator) {
+    for (int i = start; i < end; i++) {
+      allocator.gcMarkObject(positionals[i]);
+    }
+    if (keywords != null) {
+      for (RuntimeInstance value : keywords.values()) {
+        allocator.gcMarkObject(value);
+      }
+    }
   }
 }
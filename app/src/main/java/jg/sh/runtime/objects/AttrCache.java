@@ -0,0 +1,91 @@
+package jg.sh.runtime.objects;
+
+/**
+ * An inline cache for a single LOADATTR or STOREATTR instruction.
+ *
+ * The cache remembers which slot the instruction's attribute is at
+ * for the Shapes it has seen, so that later executions on objects of
+ * the same Shape skip the name lookup entirely.
+ *
+ * A cache starts out empty, becomes monomorphic after its first entry, polymorphic
+ * with up to MAX_ENTRIES entries, and megamorphic once it sees more Shapes than that.
+ * A megamorphic cache stops recording and always misses.
+ *
+ * Caches live on the RuntimeCodeObject, and so are shared by all frames
+ * (and threads) running it. Entries are replaced as a whole, never mutated.
+ */
+public final class AttrCache {
+
+  /**
+   * Max amount of Shapes a cache remembers before going megamorphic
+   */
+  public static final int MAX_ENTRIES = 4;
+
+  private static final Entries EMPTY = new Entries(new Shape[0], new int[0]);
+  private static final Entries MEGAMORPHIC = new Entries(new Shape[0], new int[0]);
+
+  private static final class Entries {
+    private final Shape [] shapes;
+    private final int [] slots;
+
+    private Entries(Shape [] shapes, int [] slots) {
+      this.shapes = shapes;
+      this.slots = slots;
+    }
+  }
+
+  private volatile Entries entries;
+
+  public AttrCache() {
+    this.entries = EMPTY;
+  }
+
+  /**
+   * Looks up the slot of this cache's attribute for the given Shape
+   * @param shape - the Shape of the object whose attribute is being accessed
+   * @return the slot of the attribute, or -1 if the Shape isn't cached
+   */
+  public int lookup(Shape shape) {
+    final Entries entries = this.entries;
+    for (int i = 0; i < entries.shapes.length; i++) {
+      if (entries.shapes[i] == shape) {
+        return entries.slots[i];
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Records the slot of this cache's attribute for the given Shape
+   *
+   * Dictionary Shapes and negative slots are never recorded.
+   *
+   * @param shape - the Shape of the object whose attribute was accessed
+   * @param slot - the slot of the attribute on that Shape
+   */
+  public synchronized void record(Shape shape, int slot) {
+    final Entries entries = this.entries;
+    if (slot < 0 || shape.isDictionary() || entries == MEGAMORPHIC || lookup(shape) >= 0) {
+      return;
+    }
+
+    final int size = entries.shapes.length;
+    if (size >= MAX_ENTRIES) {
+      this.entries = MEGAMORPHIC;
+      return;
+    }
+
+    final Shape [] shapes = new Shape[size + 1];
+    final int [] slots = new int[size + 1];
+    System.arraycopy(entries.shapes, 0, shapes, 0, size);
+    System.arraycopy(entries.slots, 0, slots, 0, size);
+    shapes[size] = shape;
+    slots[size] = slot;
+
+    this.entries = new Entries(shapes, slots);
+  }
+
+  public boolean isMegamorphic() {
+    return entries == MEGAMORPHIC;
+  }
+}
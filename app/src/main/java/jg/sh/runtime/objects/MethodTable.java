@@ -0,0 +1,93 @@
+package jg.sh.runtime.objects;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import jg.sh.modules.builtin.SystemModule;
+import jg.sh.runtime.objects.RuntimeInstance.AttrModifier;
+import jg.sh.runtime.objects.callable.ImmediateInternalCallable;
+import jg.sh.runtime.objects.callable.InternalFunction;
+
+/**
+ * The methods shared by every instance of a built-in type.
+ *
+ * A RuntimeInstance looks up its type's MethodTable after its own attributes
+ * (see RuntimeInstance.getMethodTable()). This spares each instance from holding
+ * a callable per method: a method is only bound to an instance - as an ImmediateInternalCallable -
+ * once it's actually accessed, and that callable is then kept by the instance.
+ *
+ * A MethodTable is immutable. An instance can still shadow a method with its own attribute,
+ * unless the table's methods are constant.
+ *
+ * @author Jose
+ */
+public final class MethodTable {
+
+  private final String [] names;
+  private final InternalFunction [] functions;
+  private final Map<String, Integer> indexes;
+  private final int modifierBits;
+
+  /**
+   * Constructs a MethodTable
+   * @param methods - the methods of the type, by name
+   * @param modifiers - the modifiers of every method in this table
+   */
+  public MethodTable(Map<String, InternalFunction> methods, AttrModifier ... modifiers) {
+    this.names = new String[methods.size()];
+    this.functions = new InternalFunction[methods.size()];
+
+    final Map<String, Integer> indexes = new HashMap<>();
+    int index = 0;
+    for (Entry<String, InternalFunction> method : methods.entrySet()) {
+      names[index] = method.getKey();
+      functions[index] = method.getValue();
+      indexes.put(method.getKey(), index);
+      index++;
+    }
+
+    this.indexes = Collections.unmodifiableMap(indexes);
+    this.modifierBits = Shape.toBits(modifiers);
+  }
+
+  /**
+   * @param name - the name of the method
+   * @return the index of the method in this table, or -1 if there's no such method
+   */
+  public int indexOf(String name) {
+    final Integer index = indexes.get(name);
+    return index == null ? -1 : index;
+  }
+
+  /**
+   * Binds a method of this table to an instance.
+   * @param self - the instance to bind the method to
+   * @param index - the index of the method
+   * @return the bound method
+   */
+  public RuntimeInstance bind(RuntimeInstance self, int index) {
+    return new ImmediateInternalCallable(SystemModule.getNativeModule().getModule(), self, functions[index]);
+  }
+
+  public String getName(int index) {
+    return names[index];
+  }
+
+  public int getMethodCount() {
+    return names.length;
+  }
+
+  public Set<String> getNames() {
+    return indexes.keySet();
+  }
+
+  /**
+   * @return the modifiers of every method in this table, as bits (see Shape.toBits())
+   */
+  public int getModifierBits() {
+    return modifierBits;
+  }
+}
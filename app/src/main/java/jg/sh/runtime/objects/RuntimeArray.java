@@ -1,17 +1,21 @@
 package jg.sh.runtime.objects;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
 
 import jg.sh.common.FunctionSignature;
-import jg.sh.modules.builtin.SystemModule;
 import jg.sh.runtime.alloc.Cleaner;
+import jg.sh.runtime.alloc.HeapAllocator;
 import jg.sh.runtime.exceptions.InvocationException;
-import jg.sh.runtime.loading.RuntimeModule;
 import jg.sh.runtime.objects.callable.Callable;
-import jg.sh.runtime.objects.callable.ImmediateInternalCallable;
 import jg.sh.runtime.objects.callable.InternalFunction;
+import jg.sh.runtime.objects.literals.RuntimeFloat;
 import jg.sh.runtime.objects.literals.RuntimeInteger;
+import jg.sh.runtime.threading.frames.StackFrame;
 
 import static jg.sh.runtime.objects.callable.InternalFunction.ARG_INDEX;
 import static jg.sh.runtime.objects.callable.InternalFunction.create;
@@ -19,8 +23,13 @@ import static jg.sh.runtime.objects.callable.InternalFunction.create;
 /**
  * An extensible array of elements.
  * 
- * A RuntimeArray is thread-safe through synchronization, meaning
- * only one thread at a time can access add, change and retrieve values at time.
+ * Arrays of only integers or only floats are packed into a long [] or double [],
+ * and are only boxed - through the given HeapAllocator - once an element is 
+ * retrieved as a RuntimeInstance. 
+ * Any other array holds its elements in a RuntimeInstance [] (see fitStorage())
+ * 
+ * A RuntimeArray is thread-safe through a StampedLock: only one thread at a time can
+ * add or change values, while reads are optimistic and don't block each other.
  */
 public class RuntimeArray extends RuntimeInstance {
   
@@ -41,7 +50,7 @@ public class RuntimeArray extends RuntimeInstance {
     RuntimeArray.class,
     FunctionSignature.ONE_ARG, 
     (fiber, self, callable, args) -> {
-      self.addValue(args.getPositional(ARG_INDEX));
+      self.addValue(args.getPositional(ARG_INDEX), fiber.getHeapAllocator());
       
       return RuntimeNull.NULL;
     }
@@ -55,7 +64,7 @@ public class RuntimeArray extends RuntimeInstance {
       RuntimeInstance index = args.getPositional(ARG_INDEX);
       if (index instanceof RuntimeInteger) {
         RuntimeInteger integer = (RuntimeInteger) index;
-        return self.getValue((int) integer.getValue());
+        return self.getValue((int) integer.getValue(), fiber.getHeapAllocator());
       }
       
       throw new InvocationException("Unsupported index type '"+index+"'", callable);
@@ -70,7 +79,7 @@ public class RuntimeArray extends RuntimeInstance {
       RuntimeInstance index = args.getPositional(ARG_INDEX);
       if (index instanceof RuntimeInteger) {
         RuntimeInteger integer = (RuntimeInteger) index;
-        self.setValue((int) integer.getValue(), args.getPositional(ARG_INDEX + 1));
+        self.setValue((int) integer.getValue(), args.getPositional(ARG_INDEX + 1), fiber.getHeapAllocator());
         return RuntimeNull.NULL;
       }
       
@@ -86,44 +95,438 @@ public class RuntimeArray extends RuntimeInstance {
       return fiber.getHeapAllocator().allocateString(self.toString());
     }
   );
+  
+  private static final MethodTable METHODS;
+  
+  static {
+    final Map<String, InternalFunction> methods = new LinkedHashMap<>();
+    methods.put("size", SIZE);
+    methods.put("add", ADD);
+    methods.put("toString", TO_STRING);
+    methods.put(RETR_INDEX_ATTR, RETR_INDEX);
+    methods.put(STORE_INDEX_ATTR, STORE_INDEX);
+    METHODS = new MethodTable(methods);
+  }
 
-  private final List<RuntimeInstance> array;
+  /*
+   * Storage strategies. 
+   * 
+   * An array starts out EMPTY, and its first element decides whether its 
+   * elements are packed as longs (integers) or doubles (floats), or held as 
+   * RuntimeInstances (GENERIC). The first element that doesn't fit packed storage 
+   * moves the array to GENERIC storage for good.
+   */
+  private static final int EMPTY = 0;
+  private static final int LONGS = 1;
+  private static final int DOUBLES = 2;
+  private static final int GENERIC = 3;
+  
+  private static final int INIT_CAPACITY = 4;
+  
+  /*
+   * Guards the storage below. Writers hold its write lock, while readers
+   * first try an optimistic read - which doesn't write to shared memory - and
+   * only fall back to its read lock if a writer got in the way.
+   * 
+   * As optimistic readers may see the storage mid-write, writers never shrink 
+   * or mutate an array in a way that'd fail a reader: growing copies 
+   * onto a new array (see ensureCapacity()), and readers bounds-check against 
+   * the array they actually loaded.
+   */
+  private final StampedLock lock;
+  
+  private int storage;
+  private long [] longs;
+  private double [] doubles;
+  private RuntimeInstance [] objects;
+  private int size;
   
   public RuntimeArray() {
-    super((ini, self) -> {
-      RuntimeModule systemModule = SystemModule.getNativeModule().getModule();
-    
-      ini.init("size", new ImmediateInternalCallable(systemModule, self, SIZE));
-      ini.init("add", new ImmediateInternalCallable(systemModule, self, ADD));
-      ini.init("toString", new ImmediateInternalCallable(systemModule, self, TO_STRING));
-      ini.init(RETR_INDEX_ATTR, new ImmediateInternalCallable(systemModule, self, RETR_INDEX));
-      ini.init(STORE_INDEX_ATTR, new ImmediateInternalCallable(systemModule, self, STORE_INDEX));
-    });
-    array = new ArrayList<>();
+    this.lock = new StampedLock();
+    this.storage = EMPTY;
+  }
+  
+  @Override
+  protected MethodTable getMethodTable() {
+    return METHODS;
   }
   
-  public synchronized void addValue(RuntimeInstance valueLoc) {
-    array.add(valueLoc);
+  public void addValue(RuntimeInstance valueLoc, HeapAllocator allocator) {
+    final long stamp = lock.writeLock();
+    try {
+      fitStorage(valueLoc, allocator);
+      ensureCapacity(size + 1);
+      put(size++, valueLoc);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
   }
   
-  public synchronized RuntimeInstance getValue(int index) {
-    return array.get(index);
+  public RuntimeInstance getValue(int index, HeapAllocator allocator) {
+    long stamp = lock.tryOptimisticRead();
+    if (index < 0 || index >= size) {
+      if (lock.validate(stamp)) {
+        throw new IndexOutOfBoundsException("Index: "+index);
+      }
+    }
+    else {
+      /*
+       * The element is only boxed once the optimistic read is validated,
+       * so that a failed read doesn't allocate.
+       */
+      switch (storage) {
+        case LONGS: {
+          final long [] longs = this.longs;
+          if (longs != null && index < longs.length) {
+            final long value = longs[index];
+            if (lock.validate(stamp)) {
+              return allocator.allocateInt(value);
+            }
+          }
+          break;
+        }
+        case DOUBLES: {
+          final double [] doubles = this.doubles;
+          if (doubles != null && index < doubles.length) {
+            final double value = doubles[index];
+            if (lock.validate(stamp)) {
+              return allocator.allocateFloat(value);
+            }
+          }
+          break;
+        }
+        default: {
+          final RuntimeInstance [] objects = this.objects;
+          if (objects != null && index < objects.length) {
+            final RuntimeInstance value = objects[index];
+            if (lock.validate(stamp)) {
+              return value;
+            }
+          }
+          break;
+        }
+      }
+    }
+    
+    //A writer got in the way
+    stamp = lock.readLock();
+    try {
+      checkIndex(index);
+      return get(index, allocator);
+    } finally {
+      lock.unlockRead(stamp);
+    }
   }
 
-  public synchronized void setValue(int index, RuntimeInstance valueLoc) {
-    array.set(index, valueLoc);
+  public void setValue(int index, RuntimeInstance valueLoc, HeapAllocator allocator) {
+    final long stamp = lock.writeLock();
+    try {
+      checkIndex(index);
+      fitStorage(valueLoc, allocator);
+      put(index, valueLoc);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+  
+  /**
+   * Pushes the element at an index onto a frame's operand stack, as used by LOADIN's intrinsic for arrays.
+   * 
+   * Elements of packed arrays are pushed unboxed.
+   * @param index - the index of the element
+   * @param frame - the StackFrame to push the element onto
+   * @return true if the element was pushed, false if the index is out of bounds
+   */
+  public boolean loadElement(long index, StackFrame frame) {
+    long stamp = lock.tryOptimisticRead();
+    if (index < 0 || index >= size) {
+      if (lock.validate(stamp)) {
+        return false;
+      }
+    }
+    else {
+      final int i = (int) index;
+      switch (storage) {
+        case LONGS: {
+          final long [] longs = this.longs;
+          if (longs != null && i < longs.length) {
+            final long value = longs[i];
+            if (lock.validate(stamp)) {
+              frame.pushInt(value);
+              return true;
+            }
+          }
+          break;
+        }
+        case DOUBLES: {
+          final double [] doubles = this.doubles;
+          if (doubles != null && i < doubles.length) {
+            final double value = doubles[i];
+            if (lock.validate(stamp)) {
+              frame.pushFloat(value);
+              return true;
+            }
+          }
+          break;
+        }
+        default: {
+          final RuntimeInstance [] objects = this.objects;
+          if (objects != null && i < objects.length) {
+            final RuntimeInstance value = objects[i];
+            if (lock.validate(stamp)) {
+              frame.pushOperand(value);
+              return true;
+            }
+          }
+          break;
+        }
+      }
+    }
+    
+    //A writer got in the way
+    stamp = lock.readLock();
+    try {
+      if (index < 0 || index >= size) {
+        return false;
+      }
+      
+      switch (storage) {
+        case LONGS:
+          frame.pushInt(longs[(int) index]);
+          break;
+        case DOUBLES:
+          frame.pushFloat(doubles[(int) index]);
+          break;
+        default:
+          frame.pushOperand(objects[(int) index]);
+          break;
+      }
+      return true;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+  
+  /**
+   * Pops the top of a frame's operand stack and stores it at an index, as used by STOREIN's intrinsic for arrays.
+   * 
+   * Integers and floats are stored into packed arrays without being boxed.
+   * @param index - the index to store at
+   * @param frame - the StackFrame whose top operand is the value to store
+   * @param allocator - the HeapAllocator to box elements with, if this array has to be unpacked
+   * @return true if the value was stored, false if the index is out of bounds 
+   *         (in which case the value is still popped)
+   */
+  public boolean storeElement(long index, StackFrame frame, HeapAllocator allocator) {
+    final long stamp = lock.writeLock();
+    try {
+      if (index < 0 || index >= size) {
+        frame.popOperand();
+        return false;
+      }
+      
+      if (storage == LONGS && frame.isIntOperand(0)) {
+        longs[(int) index] = frame.popInt();
+      }
+      else if (storage == DOUBLES && frame.isFloatOperand(0)) {
+        doubles[(int) index] = frame.popFloat();
+      }
+      else {
+        final RuntimeInstance value = frame.popOperand();
+        fitStorage(value, allocator);
+        put((int) index, value);
+      }
+      return true;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
   }
   
-  public List<RuntimeInstance> getArray() {
-    return array;
+  /**
+   * @param allocator - the HeapAllocator to box packed elements with
+   * @return a snapshot of this array's elements
+   */
+  public List<RuntimeInstance> getArray(HeapAllocator allocator) {
+    final long stamp = lock.readLock();
+    try {
+      final List<RuntimeInstance> elements = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        elements.add(get(i, allocator));
+      }
+      return elements;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+  
+  public int size() {
+    final long stamp = lock.tryOptimisticRead();
+    final int size = this.size;
+    if (lock.validate(stamp)) {
+      return size;
+    }
+    
+    final long readStamp = lock.readLock();
+    try {
+      return this.size;
+    } finally {
+      lock.unlockRead(readStamp);
+    }
   }
   
-  public synchronized int size() {
-    return array.size();
+  @Override
+  public void gcMark(Cleaner allocator) {
+    super.gcMark(allocator);
+    
+    final long stamp = lock.readLock();
+    try {
+      if (storage == GENERIC) {
+        for (int i = 0; i < size; i++) {
+          allocator.gcMarkObject(objects[i]);
+        }
+      }
+    } finally {
+      lock.unlockRead(stamp);
+    }
   }
   
   @Override
-  public synchronized String toString() {
-    return array.toString();
+  public String toString() {
+    final long stamp = lock.readLock();
+    try {
+      final StringBuilder builder = new StringBuilder("[");
+      for (int i = 0; i < size; i++) {
+        if (i > 0) {
+          builder.append(", ");
+        }
+        
+        switch (storage) {
+          case LONGS:
+            builder.append(longs[i]);
+            break;
+          case DOUBLES:
+            builder.append(doubles[i]);
+            break;
+          default:
+            builder.append(objects[i]);
+            break;
+        }
+      }
+      return builder.append(']').toString();
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+  
+  /*
+   * Storage - START
+   * 
+   * These must be called while holding this RuntimeArray's lock
+   */
+  
+  /**
+   * Settles the storage of an empty array, or moves a packed array 
+   * to GENERIC storage if the given value doesn't fit it.
+   */
+  private void fitStorage(RuntimeInstance value, HeapAllocator allocator) {
+    switch (storage) {
+      case EMPTY:
+        if (value instanceof RuntimeInteger) {
+          storage = LONGS;
+          longs = new long[INIT_CAPACITY];
+        }
+        else if (value instanceof RuntimeFloat) {
+          storage = DOUBLES;
+          doubles = new double[INIT_CAPACITY];
+        }
+        else {
+          storage = GENERIC;
+          objects = new RuntimeInstance[INIT_CAPACITY];
+        }
+        break;
+      case LONGS:
+        if (!(value instanceof RuntimeInteger)) {
+          toGeneric(allocator);
+        }
+        break;
+      case DOUBLES:
+        if (!(value instanceof RuntimeFloat)) {
+          toGeneric(allocator);
+        }
+        break;
+    }
+  }
+  
+  private void toGeneric(HeapAllocator allocator) {
+    final RuntimeInstance [] objects = new RuntimeInstance[Math.max(INIT_CAPACITY, size)];
+    for (int i = 0; i < size; i++) {
+      objects[i] = get(i, allocator);
+    }
+    
+    this.objects = objects;
+    this.longs = null;
+    this.doubles = null;
+    this.storage = GENERIC;
+  }
+  
+  private void ensureCapacity(int capacity) {
+    switch (storage) {
+      case LONGS:
+        if (capacity > longs.length) {
+          longs = Arrays.copyOf(longs, Math.max(capacity, longs.length * 2));
+        }
+        break;
+      case DOUBLES:
+        if (capacity > doubles.length) {
+          doubles = Arrays.copyOf(doubles, Math.max(capacity, doubles.length * 2));
+        }
+        break;
+      default:
+        if (capacity > objects.length) {
+          objects = Arrays.copyOf(objects, Math.max(capacity, objects.length * 2));
+        }
+        break;
+    }
+  }
+  
+  /**
+   * Boxes packed elements, which are only kept unboxed within the array
+   */
+  private RuntimeInstance get(int index, HeapAllocator allocator) {
+    switch (storage) {
+      case LONGS:
+        return allocator.allocateInt(longs[index]);
+      case DOUBLES:
+        return allocator.allocateFloat(doubles[index]);
+      default:
+        return objects[index];
+    }
+  }
+  
+  /**
+   * Puts a value that fits this array's storage (see fitStorage())
+   */
+  private void put(int index, RuntimeInstance value) {
+    switch (storage) {
+      case LONGS:
+        longs[index] = ((RuntimeInteger) value).getValue();
+        break;
+      case DOUBLES:
+        doubles[index] = ((RuntimeFloat) value).getValue();
+        break;
+      default:
+        objects[index] = value;
+        break;
+    }
   }
+  
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: "+index+", Size: "+size);
+    }
+  }
+  
+  /*
+   * Storage - END
+   */
 }
@@ -0,0 +1,557 @@
+package jg.sh.runtime.objects;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import jg.sh.common.FunctionSignature;
+import jg.sh.runtime.alloc.Cleaner;
+import jg.sh.runtime.alloc.HeapAllocator;
+import jg.sh.runtime.exceptions.InvocationException;
+import jg.sh.runtime.objects.callable.InternalFunction;
+import jg.sh.runtime.threading.fiber.Fiber;
+
+import static jg.sh.runtime.objects.callable.InternalFunction.ARG_INDEX;
+import static jg.sh.runtime.objects.callable.InternalFunction.create;
+
+/**
+ * A channel passing values between Fibers.
+ *
+ * A channel is either unbounded, or bounded - buffering up to its capacity of values.
+ * A channel with a capacity of 0 buffers nothing: a send waits for a receive, and vice versa.
+ *
+ * A Fiber that sends to a full channel - or receives from an empty one - is suspended,
+ * and is parked off of the task queue until the counterpart operation resumes it
+ * (see Fiber.suspend()). Blocked Fibers don't poll.
+ *
+ * Receiving gives an [ok, value] pair: ok is true if a value was received, or false
+ * - with a null value - if the channel is closed and has no more values. So, null can be 
+ * sent and received like any other value. Every receive gives back this layout - ok first, 
+ * value second - with anything else it reports after them (see receive(), tryReceive() and select())
+ *
+ * Once closed, a channel takes no more values. Its buffered values can still be
+ * received, after which receiving gives [false, null] right away.
+ *
+ * A channel is guarded by its own monitor. A Fiber may be resumed while holding a
+ * channel's monitor, but no channel is locked while holding another.
+ *
+ * @author Jose
+ */
+public class RuntimeChannel extends RuntimeInstance {
+
+  /**
+   * The capacity of an unbounded channel
+   */
+  public static final int UNBOUNDED = -1;
+  
+  /*
+   * Given by poll() - and to blocked receivers - once a channel is closed and has no more values
+   */
+  private static final RuntimeInstance CLOSED = new RuntimeInstance();
+
+  private static final InternalFunction SEND =
+  create(
+    RuntimeChannel.class,
+    FunctionSignature.ONE_ARG,
+    (fiber, self, callable, args) -> {
+      return self.send(fiber, args.getPositional(ARG_INDEX));
+    }
+  );
+
+  private static final InternalFunction RECEIVE =
+  create(
+    RuntimeChannel.class,
+    FunctionSignature.NO_ARG,
+    (fiber, self, callable, args) -> {
+      return self.receive(fiber);
+    }
+  );
+
+  private static final InternalFunction TRY_SEND =
+  create(
+    RuntimeChannel.class,
+    FunctionSignature.ONE_ARG,
+    (fiber, self, callable, args) -> {
+      return fiber.getHeapAllocator().allocateBool(self.trySend(args.getPositional(ARG_INDEX)));
+    }
+  );
+
+  private static final InternalFunction TRY_RECEIVE =
+  create(
+    RuntimeChannel.class,
+    FunctionSignature.NO_ARG,
+    (fiber, self, callable, args) -> {
+      return self.tryReceive(fiber);
+    }
+  );
+
+  private static final InternalFunction CLOSE =
+  create(
+    RuntimeChannel.class,
+    FunctionSignature.NO_ARG,
+    (fiber, self, callable, args) -> {
+      self.close();
+      return RuntimeNull.NULL;
+    }
+  );
+
+  private static final InternalFunction IS_CLOSED =
+  create(
+    RuntimeChannel.class,
+    FunctionSignature.NO_ARG,
+    (fiber, self, callable, args) -> {
+      return fiber.getHeapAllocator().allocateBool(self.isClosed());
+    }
+  );
+
+  private static final InternalFunction SIZE =
+  create(
+    RuntimeChannel.class,
+    FunctionSignature.NO_ARG,
+    (fiber, self, callable, args) -> {
+      return fiber.getHeapAllocator().allocateInt(self.size());
+    }
+  );
+
+  private static final MethodTable METHODS;
+
+  static {
+    final Map<String, InternalFunction> methods = new LinkedHashMap<>();
+    methods.put("send", SEND);
+    methods.put("receive", RECEIVE);
+    methods.put("trySend", TRY_SEND);
+    methods.put("tryReceive", TRY_RECEIVE);
+    methods.put("close", CLOSE);
+    methods.put("isClosed", IS_CLOSED);
+    methods.put("size", SIZE);
+    METHODS = new MethodTable(methods, AttrModifier.CONSTANT);
+  }
+
+  /**
+   * A Fiber blocked on a channel - to send, receive or select
+   */
+  private static class Waiter {
+    private final Fiber fiber;
+
+    /*
+     * The value to send, or null if receiving
+     */
+    private final RuntimeInstance value;
+
+    /*
+     * The selection this Waiter is part of, or null if it's a lone send or receive
+     */
+    private final Selection selection;
+
+    /*
+     * The index of the channel waited on, amongst its selection
+     */
+    private final int index;
+
+    private Waiter(Fiber fiber, RuntimeInstance value, Selection selection, int index) {
+      this.fiber = fiber;
+      this.value = value;
+      this.selection = selection;
+      this.index = index;
+    }
+
+    /**
+     * Claims this Waiter, to complete its operation.
+     *
+     * A lone Waiter is only ever held by one channel, so it's always claimed by
+     * whoever removes it from that channel. A Waiter of a selection is claimed only
+     * if no other channel in the selection has been.
+     * @return true if this Waiter has been claimed
+     */
+    private boolean claim() {
+      return selection == null || selection.claim();
+    }
+
+    /**
+     * Resumes this - claimed - receiving Waiter with a value, or CLOSED
+     *
+     * This is never called while holding a channel's monitor, as
+     * completing a selection locks its channels.
+     */
+    private void receive(RuntimeInstance value) {
+      if (selection == null) {
+        fiber.resume(this, received(fiber, value), null);
+      }
+      else {
+        selection.complete(index, value);
+      }
+    }
+  }
+
+  /**
+   * A Fiber receiving from whichever of several channels first has a value (see select())
+   */
+  private static class Selection {
+    private final Fiber fiber;
+    private final RuntimeChannel [] channels;
+    private final AtomicBoolean claimed;
+
+    private Selection(Fiber fiber, RuntimeChannel [] channels) {
+      this.fiber = fiber;
+      this.channels = channels;
+      this.claimed = new AtomicBoolean();
+    }
+
+    private boolean claim() {
+      return claimed.compareAndSet(false, true);
+    }
+
+    private boolean isClaimed() {
+      return claimed.get();
+    }
+
+    /**
+     * Resumes the selecting Fiber, and takes this selection's Waiters off of its channels
+     * @param index - the index of the channel received from, or -1 if timed out
+     * @param value - the value received, or CLOSED
+     */
+    private void complete(int index, RuntimeInstance value) {
+      fiber.resume(this, selected(fiber, index, value), null);
+
+      for (RuntimeChannel channel : channels) {
+        synchronized (channel) {
+          channel.receivers.removeIf(w -> w.selection == this);
+        }
+      }
+    }
+  }
+
+  private final int capacity;
+  private final Deque<RuntimeInstance> buffer;
+  private final Deque<Waiter> senders;
+  private final Deque<Waiter> receivers;
+  private boolean closed;
+
+  /**
+   * Constructs a RuntimeChannel
+   * @param capacity - the most values this channel buffers, or UNBOUNDED
+   */
+  public RuntimeChannel(int capacity) {
+    this.capacity = capacity;
+    this.buffer = new ArrayDeque<>();
+    this.senders = new ArrayDeque<>();
+    this.receivers = new ArrayDeque<>();
+  }
+
+  /**
+   * Sends a value on this channel, suspending the sending Fiber if
+   * it has to wait for room.
+   * @param fiber - the sending Fiber
+   * @param value - the value to send
+   * @return RuntimeNull.NULL
+   * @throws InvocationException - if this channel is closed
+   */
+  public RuntimeInstance send(Fiber fiber, RuntimeInstance value) throws InvocationException {
+    final Waiter receiver;
+    synchronized (this) {
+      if (closed) {
+        throw new InvocationException("Can't send on a closed channel", null);
+      }
+
+      receiver = claimWaiter(receivers);
+      if (receiver == null) {
+        if (hasRoom()) {
+          buffer.offerLast(value);
+        }
+        else {
+          final Waiter sender = new Waiter(fiber, value, null, 0);
+          senders.offerLast(sender);
+          fiber.suspend(sender);
+        }
+        return RuntimeNull.NULL;
+      }
+    }
+
+    receiver.receive(value);
+    return RuntimeNull.NULL;
+  }
+
+  /**
+   * Receives a value from this channel, suspending the receiving Fiber
+   * if it has to wait for one.
+   * @param fiber - the receiving Fiber
+   * @return [ok, value] - where ok is false, and value null, if this channel is closed and 
+   *         has no more values. Or RuntimeNull.NULL as a placeholder if the receiving Fiber has been suspended
+   */
+  public RuntimeInstance receive(Fiber fiber) {
+    synchronized (this) {
+      final RuntimeInstance value = poll();
+      if (value != null) {
+        return received(fiber, value);
+      }
+
+      final Waiter receiver = new Waiter(fiber, null, null, 0);
+      receivers.offerLast(receiver);
+      fiber.suspend(receiver);
+      return RuntimeNull.NULL;
+    }
+  }
+
+  /**
+   * Sends a value on this channel, if it can be without waiting
+   * @param value - the value to send
+   * @return true if the value was sent, false if this channel is full
+   * @throws InvocationException - if this channel is closed
+   */
+  public boolean trySend(RuntimeInstance value) throws InvocationException {
+    final Waiter receiver;
+    synchronized (this) {
+      if (closed) {
+        throw new InvocationException("Can't send on a closed channel", null);
+      }
+
+      receiver = claimWaiter(receivers);
+      if (receiver == null) {
+        if (!hasRoom()) {
+          return false;
+        }
+        buffer.offerLast(value);
+        return true;
+      }
+    }
+
+    receiver.receive(value);
+    return true;
+  }
+
+  /**
+   * Receives a value from this channel, if there's one without waiting
+   * @param fiber - the receiving Fiber
+   * @return [ok, value, closed] - where ok is true if a value was received. Otherwise, 
+   *         value is null and closed tells whether this channel is closed and has no more values
+   *         - rather than having no value yet
+   */
+  public RuntimeInstance tryReceive(Fiber fiber) {
+    final RuntimeInstance value;
+    synchronized (this) {
+      value = poll();
+    }
+    
+    final boolean ok = value != null && value != CLOSED;
+    final HeapAllocator allocator = fiber.getHeapAllocator();
+    final RuntimeArray result = allocator.allocateEmptyArray();
+    result.addValue(allocator.allocateBool(ok), allocator);
+    result.addValue(ok ? value : RuntimeNull.NULL, allocator);
+    result.addValue(allocator.allocateBool(value == CLOSED), allocator);
+    return result;
+  }
+
+  /**
+   * Closes this channel, resuming the Fibers blocked on it.
+   *
+   * Blocked receivers are given [false, null], while blocked senders are given an error.
+   * @throws InvocationException - if this channel is already closed
+   */
+  public void close() throws InvocationException {
+    final List<Waiter> receivers;
+    synchronized (this) {
+      if (closed) {
+        throw new InvocationException("The channel is already closed", null);
+      }
+      closed = true;
+
+      Waiter sender;
+      while ((sender = senders.pollFirst()) != null) {
+        sender.fiber.resume(sender, null, sender.fiber.getHeapAllocator().allocateError("The channel was closed while sending"));
+      }
+
+      receivers = new ArrayList<>(this.receivers);
+      this.receivers.clear();
+    }
+
+    for (Waiter receiver : receivers) {
+      if (receiver.claim()) {
+        receiver.receive(CLOSED);
+      }
+    }
+  }
+
+  public synchronized boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   * @return the amount of values buffered in this channel
+   */
+  public synchronized int size() {
+    return buffer.size();
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Receives from whichever of several channels first has a value, suspending
+   * the receiving Fiber if none has one yet.
+   *
+   * The outcome is given as [ok, value, index]: whether a value was received, the 
+   * value received, and the index of the channel received from - as with receive(), 
+   * ok is false and value null if that channel is closed and has no more values. 
+   * If the timeout elapses first, the outcome is [false, null, -1].
+   *
+   * @param fiber - the receiving Fiber
+   * @param channels - the channels to receive from
+   * @param timeout - the most milliseconds to wait for, or -1 to wait indefinitely
+   * @return the outcome, or RuntimeNull.NULL as a placeholder if the receiving Fiber has been suspended
+   */
+  public static RuntimeInstance select(Fiber fiber, RuntimeChannel [] channels, long timeout) {
+    //First, try each channel without waiting
+    for (int i = 0; i < channels.length; i++) {
+      final RuntimeInstance value;
+      synchronized (channels[i]) {
+        value = channels[i].poll();
+      }
+      if (value != null) {
+        return selected(fiber, i, value);
+      }
+    }
+
+    if (timeout == 0 || channels.length == 0) {
+      return selected(fiber, -1, CLOSED);
+    }
+
+    /*
+     * Then wait on each channel. A channel may have a value by now,
+     * or a channel already waited on may complete this selection while
+     * it's still waiting on the others.
+     */
+    final Selection selection = new Selection(fiber, channels);
+    fiber.suspend(selection);
+
+    int index = -1;
+    RuntimeInstance value = null;
+    for (int i = 0; i < channels.length && !selection.isClaimed(); i++) {
+      final RuntimeChannel channel = channels[i];
+      synchronized (channel) {
+        if (channel.isReady()) {
+          if (selection.claim()) {
+            index = i;
+            value = channel.poll();
+          }
+          break;
+        }
+        channel.receivers.offerLast(new Waiter(fiber, null, selection, i));
+      }
+    }
+
+    if (value != null) {
+      selection.complete(index, value);
+    }
+    else if (timeout > 0 && !selection.isClaimed()) {
+      fiber.getManager().scheduleTimeout(() -> {
+        if (selection.claim()) {
+          selection.complete(-1, CLOSED);
+        }
+      }, timeout);
+    }
+
+    return RuntimeNull.NULL;
+  }
+
+  /*
+   * PRIVATE UTILITY METHODS - start (callers hold this channel's monitor)
+   */
+
+  private boolean hasRoom() {
+    return capacity == UNBOUNDED || buffer.size() < capacity;
+  }
+
+  /**
+   * Whether poll() would give a value
+   */
+  private boolean isReady() {
+    return !buffer.isEmpty() || !senders.isEmpty() || closed;
+  }
+
+  /**
+   * Receives a value without waiting, letting in a blocked sender if there's one
+   * @return the value received, CLOSED if this channel is closed and has no more values,
+   *         or null if there's no value yet
+   */
+  private RuntimeInstance poll() {
+    final Waiter sender = senders.pollFirst();
+    if (sender != null) {
+      sender.fiber.resume(sender, RuntimeNull.NULL, null);
+      if (buffer.isEmpty()) {
+        return sender.value;
+      }
+      buffer.offerLast(sender.value);
+    }
+
+    if (!buffer.isEmpty()) {
+      return buffer.pollFirst();
+    }
+    return closed ? CLOSED : null;
+  }
+
+  /**
+   * Removes the first Waiter that can be claimed, dropping those that can't
+   * - as their selection has completed elsewhere
+   */
+  private static Waiter claimWaiter(Deque<Waiter> waiters) {
+    Waiter waiter;
+    while ((waiter = waiters.pollFirst()) != null) {
+      if (waiter.claim()) {
+        return waiter;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * The outcome of a receive - [ok, value] - for a value or CLOSED
+   */
+  private static RuntimeArray received(Fiber fiber, RuntimeInstance value) {
+    final HeapAllocator allocator = fiber.getHeapAllocator();
+    final RuntimeArray result = allocator.allocateEmptyArray();
+    result.addValue(allocator.allocateBool(value != CLOSED), allocator);
+    result.addValue(value != CLOSED ? value : RuntimeNull.NULL, allocator);
+    return result;
+  }
+
+  /**
+   * The outcome of a select - [ok, value, index] - for a value or CLOSED
+   */
+  private static RuntimeArray selected(Fiber fiber, int index, RuntimeInstance value) {
+    final HeapAllocator allocator = fiber.getHeapAllocator();
+    final RuntimeArray result = received(fiber, value);
+    result.addValue(allocator.allocateInt(index), allocator);
+    return result;
+  }
+
+  /*
+   * PRIVATE UTILITY METHODS - end
+   */
+
+  @Override
+  public synchronized void gcMark(Cleaner allocator) {
+    super.gcMark(allocator);
+    for (RuntimeInstance value : buffer) {
+      allocator.gcMarkObject(value);
+    }
+    for (Waiter sender : senders) {
+      allocator.gcMarkObject(sender.value);
+    }
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "<channel "+(capacity == UNBOUNDED ? "unbounded" : "capacity "+capacity)+
+           ", "+buffer.size()+" buffered"+(closed ? ", closed" : "")+">";
+  }
+
+  @Override
+  protected MethodTable getMethodTable() {
+    return METHODS;
+  }
+}
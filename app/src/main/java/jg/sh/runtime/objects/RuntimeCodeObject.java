@@ -3,37 +3,238 @@ package jg.sh.runtime.objects;
 import java.util.Map;
 
 import jg.sh.common.FunctionSignature;
+import jg.sh.compile.instrs.OpCode;
 import jg.sh.runtime.alloc.Cleaner;
-import jg.sh.runtime.loading.ContextualInstr;
+import jg.sh.runtime.jit.CompiledFunction;
+import jg.sh.runtime.objects.literals.RuntimeString;
 
+/**
+ * The runtime representation of a compiled function.
+ * 
+ * Instructions are held as a flat int[], where each instruction
+ * occupies INSTR_WIDTH words:
+ *   - code[i * INSTR_WIDTH]     : the ordinal of the instruction's OpCode
+ *   - code[i * INSTR_WIDTH + 1] : the instruction's operand (0 if the instruction has none)
+ *   
+ * For jump instructions, the operand is the index of the instruction to jump to.
+ * 
+ * Two side tables accompany the code, both indexed by instruction index:
+ *   - exceptionJumps : the index of the instruction to jump to if an error occurs, or -1 if 
+ *                      there's no error handler for that instruction
+ *   - positions      : the source locations of each instruction, POSITION_WIDTH words each 
+ *                      (start line, start column, end line, end column)
+ *                      
+ * LOADATTR and STOREATTR instructions also get an AttrCache (an inline cache), 
+ * which are shared by all frames running this code object.
+ * 
+ * The code is rewritten at runtime through quicken() and deoptimize(): arithmetic
+ * and comparison instructions are swapped for type-specialized variants (see OpCode).
+ * Writes to the code are single int writes, so a frame racing a rewrite
+ * sees either form of the instruction - both of which are correct.
+ * 
+ * If JIT compilation is enabled, frames report calls and backward jumps through heat().
+ * Once hot, the code object is given to BaselineCompiler, and calls to it 
+ * may run its CompiledFunction instead.
+ */
 public class RuntimeCodeObject extends RuntimeInstance {
+  
+  public static final int INSTR_WIDTH = 2;
+  public static final int POSITION_WIDTH = 4;
 
   private final String boundName;
   private final FunctionSignature signature;
   private final Map<String, Integer> keywordIndexes;
-  private final ContextualInstr [] instrs;
+  private final int [] code;
+  private final int [] exceptionJumps;
+  private final int [] positions;
+  private final AttrCache [] attrCaches;
+  private final String [][] keywordLayouts;
+  private final boolean [] deoptimized;
+  private int [] executionCounts;
+  private int jitThreshold;
+  private int hotness;
+  private volatile CompiledFunction compiledFunction;
   private final int [] captures;
   private final int varArgIndex;
   private final int keywordVarArgIndex;
+  private final int localVarCount;
+  private final int maxStackDepth;
 
   public RuntimeCodeObject(String boundName, 
                            FunctionSignature signature, 
                            Map<String, Integer> keywordIndexes, 
                            int varArgIndex,
                            int keywordVarArgIndex,
-                           ContextualInstr [] instrs, 
+                           int localVarCount,
+                           int maxStackDepth,
+                           int [] code,
+                           int [] exceptionJumps,
+                           int [] positions,
                            int [] captures) {
     this.boundName = boundName;
     this.signature = signature;
     this.keywordIndexes = keywordIndexes;
-    this.instrs = instrs;
+    this.code = code;
+    this.exceptionJumps = exceptionJumps;
+    this.positions = positions;
+    this.attrCaches = new AttrCache[exceptionJumps.length];
+    for (int i = 0; i < exceptionJumps.length; i++) {
+      final OpCode op = OpCode.fromOrdinal(code[i * INSTR_WIDTH]);
+      if (op == OpCode.LOADATTR || op == OpCode.STOREATTR) {
+        attrCaches[i] = new AttrCache();
+      }
+    }
+    this.keywordLayouts = new String[exceptionJumps.length][];
+    this.deoptimized = new boolean[exceptionJumps.length];
     this.captures = captures;
     this.varArgIndex = varArgIndex;
     this.keywordVarArgIndex = keywordVarArgIndex;
+    this.localVarCount = localVarCount;
+    this.maxStackDepth = maxStackDepth;
+    this.jitThreshold = -1;
+  }
+  
+  public int [] getCode() {
+    return code;
+  }
+  
+  public int [] getExceptionJumps() {
+    return exceptionJumps;
+  }
+  
+  public int [] getPositions() {
+    return positions;
+  }
+  
+  /**
+   * @return the inline caches of this code object's instructions, indexed by instruction index. 
+   *         Only LOADATTR and STOREATTR instructions have an AttrCache.
+   */
+  public AttrCache [] getAttrCaches() {
+    return attrCaches;
+  }
+  
+  /**
+   * Retrieves the keyword layout of a CALLK instruction: the names of its arguments, 
+   * where positional arguments have an empty name.
+   * 
+   * The layout is decoded from the constant pool on first use, and then kept.
+   * 
+   * @param instrIndex - the index of the CALLK instruction
+   * @param constants - the constant table of this code object's module
+   * @return the keyword layout of the instruction
+   */
+  public String [] getKeywordLayout(int instrIndex, RuntimeInstance [] constants) {
+    String [] layout = keywordLayouts[instrIndex];
+    if (layout == null) {
+      //Decoding is idempotent, so frames racing here will store equal layouts
+      final int layoutIndex = code[instrIndex * INSTR_WIDTH + 1];
+      layout = ((RuntimeString) constants[layoutIndex]).getValue().split(",", -1);
+      keywordLayouts[instrIndex] = layout;
+    }
+    return layout;
+  }
+  
+  /**
+   * Rewrites an instruction with its quickened, type-specialized form.
+   * 
+   * Instructions that have been deoptimized before are left as is.
+   * 
+   * @param instrIndex - the index of the instruction
+   * @param quickened - the quickened OpCode
+   */
+  public void quicken(int instrIndex, OpCode quickened) {
+    if (!deoptimized[instrIndex]) {
+      code[instrIndex * INSTR_WIDTH] = quickened.ordinal();
+    }
+  }
+  
+  /**
+   * Rewrites a quickened instruction back to its generic form,
+   * and prevents it from being quickened again.
+   * 
+   * @param instrIndex - the index of the instruction
+   * @param generic - the generic OpCode
+   */
+  public void deoptimize(int instrIndex, OpCode generic) {
+    deoptimized[instrIndex] = true;
+    code[instrIndex * INSTR_WIDTH] = generic.ordinal();
+  }
+  
+  /**
+   * Makes frames running this code object count how many 
+   * times each instruction is executed. See SequenceProfiler.
+   * 
+   * This should be done before the code object is ran.
+   */
+  public void enableProfiling() {
+    if (executionCounts == null) {
+      executionCounts = new int[getInstrCount()];
+    }
+  }
+  
+  /**
+   * @return how many times each instruction was executed, indexed by instruction index,
+   *         or null if profiling isn't enabled for this code object
+   */
+  public int [] getExecutionCounts() {
+    return executionCounts;
+  }
+  
+  /**
+   * Makes this code object eligible for JIT compilation,
+   * once its hotness reaches the given threshold.
+   * 
+   * @param threshold - the amount of calls and backward jumps before compilation
+   */
+  public void enableJit(int threshold) {
+    this.jitThreshold = threshold;
+  }
+  
+  /**
+   * Increments the hotness of this code object. 
+   * 
+   * Hotness isn't synchronized - as it's only an estimate - 
+   * so concurrent frames may lose some increments.
+   * 
+   * @return true only once: when the hotness reaches the JIT threshold
+   */
+  public boolean heat() {
+    if (jitThreshold < 0 || hotness > jitThreshold) {
+      return false;
+    }
+    return hotness++ == jitThreshold;
+  }
+  
+  /**
+   * @return the compiled form of this code object, or null if it hasn't been compiled
+   */
+  public CompiledFunction getCompiledFunction() {
+    return compiledFunction;
+  }
+  
+  public void setCompiledFunction(CompiledFunction compiledFunction) {
+    this.compiledFunction = compiledFunction;
+  }
+  
+  public int getInstrCount() {
+    return exceptionJumps.length;
+  }
+  
+  /**
+   * @return the amount of local variable slots a frame of this code object needs,
+   *         as computed by the compiler
+   */
+  public int getLocalVarCount() {
+    return localVarCount;
   }
   
-  public ContextualInstr [] getInstrs() {
-    return instrs;
+  /**
+   * @return the maximum depth the operand stack reaches when running this code object, 
+   *         as computed by the compiler
+   */
+  public int getMaxStackDepth() {
+    return maxStackDepth;
   }
   
   public String getBoundName() {
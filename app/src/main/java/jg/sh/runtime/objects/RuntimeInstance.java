@@ -3,11 +3,13 @@ package jg.sh.runtime.objects;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.function.BiConsumer;
 
 import jg.sh.runtime.alloc.Cleaner;
@@ -17,7 +19,15 @@ import jg.sh.runtime.exceptions.OperationException;
 /**
  * Root type representing all runtime entities.
  * 
- * A RuntimeInstance is backed by a Map of attributes.
+ * A RuntimeInstance is backed by a Shape - which maps attribute names to slots - 
+ * and a slot array holding the attribute values. RuntimeInstances with the same 
+ * attribute layout share the same Shape.
+ * 
+ * If a RuntimeInstance gains too many attributes, it switches to dictionary mode
+ * and holds its attributes in a Map instead (see Shape.MAX_SLOTS)
+ * 
+ * Built-in types may also have a MethodTable, which is looked up after 
+ * a RuntimeInstance's own attributes (see getMethodTable())
  */
 public class RuntimeInstance implements Markable {
 
@@ -25,11 +35,39 @@ public class RuntimeInstance implements Markable {
     CONSTANT,
     EXPORT;
   }
+  
+  private static final RuntimeInstance [] NO_SLOTS = new RuntimeInstance[0];
+  
+  private static final int CONSTANT_BIT = Shape.toBit(AttrModifier.CONSTANT);
     
-  private final Map<String, RuntimeInstance> attributes;
-  private final Map<String, EnumSet<AttrModifier>> attrModifiers;
+  /*
+   * Writers set slots (and the dictionary maps) before shape, 
+   * and readers read shape before slots.
+   * 
+   * Both are only ever written through the updaters below with lazySet() - a
+   * release store - rather than a full volatile store. This keeps allocation cheap,
+   * while readers - through volatile reads - still see slots that are at least as 
+   * recent as the shape they read.
+   */
+  private volatile Shape shape;
+  private volatile RuntimeInstance [] slots;
+  
+  private static final AtomicReferenceFieldUpdater<RuntimeInstance, Shape> SHAPE = 
+    AtomicReferenceFieldUpdater.newUpdater(RuntimeInstance.class, Shape.class, "shape");
+  private static final AtomicReferenceFieldUpdater<RuntimeInstance, RuntimeInstance []> SLOTS = 
+    AtomicReferenceFieldUpdater.newUpdater(RuntimeInstance.class, RuntimeInstance[].class, "slots");
+  
+  //Only used in dictionary mode
+  private Map<String, RuntimeInstance> dictionary;
+  private Map<String, Integer> dictionaryModifiers;
   
   private volatile boolean isSealed;
+  
+  /*
+   * Methods of this RuntimeInstance's MethodTable that have been bound to it, 
+   * by their index in the table. Allocated once a method is first accessed.
+   */
+  private volatile RuntimeInstance [] boundMethods;
 
   private int gcFlag;
 
@@ -37,33 +75,33 @@ public class RuntimeInstance implements Markable {
     this();
 
     if (initializer != null) {
-      initializer.accept((n, value, mods) -> {
-        attributes.put(n, value);
-        attrModifiers.put(n, mods.length == 0 ? EnumSet.noneOf(AttrModifier.class) : EnumSet.copyOf(Arrays.asList(mods)));
-      }, this);
+      initializer.accept((n, value, mods) -> putAttr(n, value, Shape.toBits(mods)), this);
     }
   }
   
   public RuntimeInstance() {
-    this.attributes = new ConcurrentHashMap<>();
-    this.attrModifiers = new ConcurrentHashMap<>();
+    SHAPE.lazySet(this, Shape.ROOT);
+    SLOTS.lazySet(this, NO_SLOTS);
     this.gcFlag = Cleaner.GC_UNMARK_VALUE;
   }
     
   public void setAttribute(String name, RuntimeInstance valueAddr, AttrModifier ... modifiers) throws OperationException {
-    setAttribute(name, valueAddr, Arrays.asList(modifiers));
+    setAttribute(name, valueAddr, Shape.toBits(modifiers));
   }
 
   public void setAttribute(String name, RuntimeInstance valueAddr, Collection<AttrModifier> modifiers) throws OperationException {
+    setAttribute(name, valueAddr, Shape.toBits(modifiers));
+  }
+  
+  private synchronized void setAttribute(String name, RuntimeInstance valueAddr, int modifierBits) throws OperationException {
     if (isSealed) {
       throw new OperationException("The object is sealed and immutable");
     }
-    else if(attrModifiers.getOrDefault(name, EnumSet.noneOf(AttrModifier.class)).contains(AttrModifier.CONSTANT)) {
+    else if((getModifierBits(name) & CONSTANT_BIT) != 0) {
       throw new OperationException(name+" is constant and can't be re-assigned");
     }
     else {
-      attributes.put(name, valueAddr);
-      attrModifiers.put(name, modifiers.size() == 0 ? EnumSet.noneOf(AttrModifier.class) : EnumSet.copyOf(modifiers));
+      putAttr(name, valueAddr, modifierBits);
     }
   }
 
@@ -71,45 +109,72 @@ public class RuntimeInstance implements Markable {
     setAttrModifers(name, Arrays.asList(modifiers));
   }
 
-  public void setAttrModifers(String name, Collection<AttrModifier> modifiers) throws OperationException {
+  public synchronized void setAttrModifers(String name, Collection<AttrModifier> modifiers) throws OperationException {
     if (isSealed) {
       throw new OperationException("The object is sealed and immutable");
     }
-    else if(!attrModifiers.containsKey(name)) {
+    else if(!hasOwnAttr(name)) {
       throw new OperationException(name+" doesn't exist on this object");
     }
     else {
-      attrModifiers.put(name, modifiers.size() == 0 ? EnumSet.noneOf(AttrModifier.class) : EnumSet.copyOf(modifiers));
+      putModifierBits(name, Shape.toBits(modifiers));
     }
   }
 
-  public void appendAttrModifier(String name, AttrModifier ... modifiers) throws OperationException {
+  public synchronized void appendAttrModifier(String name, AttrModifier ... modifiers) throws OperationException {
     if (isSealed) {
       throw new OperationException("The object is sealed and immutable");
     }
-    else if(!attrModifiers.containsKey(name)) {
+    else if(!hasOwnAttr(name)) {
       throw new OperationException(name+" doesn't exist on this object");
     }
     else {
-      EnumSet<AttrModifier> curMods = attrModifiers.get(name);
-      curMods.addAll(Arrays.asList(modifiers));
+      putModifierBits(name, getModifierBits(name) | Shape.toBits(modifiers));
     }
   }
   
   public RuntimeInstance getAttr(String name) {
-    return attributes.get(name);
+    final Shape shape = this.shape;
+    if (shape.isDictionary()) {
+      final RuntimeInstance value = dictionary.get(name);
+      return value != null ? value : getMethod(name);
+    }
+    
+    final int slot = shape.getSlot(name);
+    return slot < 0 ? getMethod(name) : slots[slot];
+  }
+  
+  /**
+   * Returns the MethodTable of this RuntimeInstance's type, whose methods are 
+   * looked up after this RuntimeInstance's own attributes.
+   * 
+   * Built-in types override this to return a MethodTable shared by all of their instances.
+   * @return the MethodTable of this RuntimeInstance's type, or null if it has none
+   */
+  protected MethodTable getMethodTable() {
+    return null;
   }
 
   public Set<AttrModifier> attrModifiers(String name) {
-    return attrModifiers.get(name);
+    return hasAttr(name) ? Shape.toModifiers(getModifierBits(name)) : null;
   }
 
   public Set<String> attrs() {
-    return attributes.keySet();
+    final Shape shape = this.shape;
+    final Set<String> ownAttrs = shape.isDictionary() ? Collections.unmodifiableSet(dictionary.keySet()) : shape.getNames();
+    
+    final MethodTable methodTable = getMethodTable();
+    if (methodTable == null) {
+      return ownAttrs;
+    }
+    
+    final Set<String> attrs = new LinkedHashSet<>(ownAttrs);
+    attrs.addAll(methodTable.getNames());
+    return Collections.unmodifiableSet(attrs);
   }
 
   public boolean is(String name, AttrModifier mod) {
-    return hasAttr(name) ? attrModifiers.get(name).contains(mod) : false;
+    return (getModifierBits(name) & Shape.toBit(mod)) != 0;
   }
 
   public void seal() {
@@ -117,7 +182,60 @@ public class RuntimeInstance implements Markable {
   }
   
   public boolean hasAttr(String name) {
-    return attributes.containsKey(name);
+    if (hasOwnAttr(name)) {
+      return true;
+    }
+    
+    final MethodTable methodTable = getMethodTable();
+    return methodTable != null && methodTable.indexOf(name) >= 0;
+  }
+  
+  private boolean hasOwnAttr(String name) {
+    final Shape shape = this.shape;
+    return shape.isDictionary() ? dictionary.containsKey(name) : shape.getSlot(name) >= 0;
+  }
+  
+  /**
+   * Loads an attribute through an inline cache.
+   * @param cache - the AttrCache of the loading instruction
+   * @return the attribute's value, or null if this RuntimeInstance's Shape isn't cached
+   */
+  public RuntimeInstance getCachedAttr(AttrCache cache) {
+    final Shape shape = this.shape;
+    final int slot = cache.lookup(shape);
+    return slot < 0 ? null : slots[slot];
+  }
+  
+  /**
+   * Stores an attribute through an inline cache.
+   * 
+   * Caches for storing only record Shapes in which the attribute has no modifiers,
+   * so the only check left is whether this RuntimeInstance is sealed.
+   * 
+   * @param cache - the AttrCache of the storing instruction
+   * @param value - the value to store
+   * @return true if the value was stored, false if this RuntimeInstance's Shape isn't cached
+   *         (or if it's sealed)
+   */
+  public synchronized boolean setCachedAttr(AttrCache cache, RuntimeInstance value) {
+    if (isSealed) {
+      return false;
+    }
+    
+    final int slot = cache.lookup(shape);
+    if (slot < 0) {
+      return false;
+    }
+    
+    slots[slot] = value;
+    return true;
+  }
+  
+  /**
+   * @return the Shape of this RuntimeInstance
+   */
+  public Shape getShape() {
+    return shape;
   }
   
   public void setGcFlag(int gcFlag) {
@@ -134,19 +252,189 @@ public class RuntimeInstance implements Markable {
   
   @Override
   public void gcMark(Cleaner allocator) {
-    for (RuntimeInstance attr : attributes.values()) {
-      allocator.gcMarkObject(attr);
+    final Shape shape = this.shape;
+    if (shape.isDictionary()) {
+      for (RuntimeInstance attr : dictionary.values()) {
+        allocator.gcMarkObject(attr);
+      }
+    }
+    else {
+      final RuntimeInstance [] slots = this.slots;
+      for (int i = 0; i < shape.getSlotCount(); i++) {
+        allocator.gcMarkObject(slots[i]);
+      }
     }
   }
     
+  /**
+   * Returns the attributes of this RuntimeInstance.
+   * 
+   * Note: The returned Map is a snapshot and can't be modified.
+   * @return a snapshot of the attributes of this RuntimeInstance
+   */
   public Map<String, RuntimeInstance> getAttributes() {
-    return attributes;
+    final Shape shape = this.shape;
+    final MethodTable methodTable = getMethodTable();
+    if (shape.isDictionary()) {
+      final Map<String, RuntimeInstance> attributes = new LinkedHashMap<>(dictionary);
+      addMethods(attributes, methodTable);
+      return Collections.unmodifiableMap(attributes);
+    }
+    else if (shape.getSlotCount() == 0 && methodTable == null) {
+      return Collections.emptyMap();
+    }
+    
+    final RuntimeInstance [] slots = this.slots;
+    final Map<String, RuntimeInstance> attributes = new LinkedHashMap<>();
+    for (int i = 0; i < shape.getSlotCount(); i++) {
+      attributes.put(shape.getName(i), slots[i]);
+    }
+    addMethods(attributes, methodTable);
+    return Collections.unmodifiableMap(attributes);
   }
+  
+  /**
+   * Adds the methods of a MethodTable that aren't shadowed by an own attribute
+   */
+  private void addMethods(Map<String, RuntimeInstance> attributes, MethodTable methodTable) {
+    if (methodTable != null) {
+      for (int i = 0; i < methodTable.getMethodCount(); i++) {
+        if (!attributes.containsKey(methodTable.getName(i))) {
+          attributes.put(methodTable.getName(i), getMethod(i, methodTable));
+        }
+      }
+    }
+  }
+  
+  /*
+   * Attribute storage - START
+   */
+  
+  private int getModifierBits(String name) {
+    final Shape shape = this.shape;
+    if (shape.isDictionary()) {
+      final Integer bits = dictionaryModifiers.get(name);
+      return bits != null ? bits : getMethodModifierBits(name);
+    }
+    
+    final int slot = shape.getSlot(name);
+    return slot < 0 ? getMethodModifierBits(name) : shape.getModifiers(slot);
+  }
+  
+  private int getMethodModifierBits(String name) {
+    final MethodTable methodTable = getMethodTable();
+    return methodTable != null && methodTable.indexOf(name) >= 0 ? methodTable.getModifierBits() : 0;
+  }
+  
+  /**
+   * Looks up a method of this RuntimeInstance's MethodTable, binding it if it hasn't been yet
+   * @param name - the name of the method
+   * @return the bound method, or null if there's no such method
+   */
+  private RuntimeInstance getMethod(String name) {
+    final MethodTable methodTable = getMethodTable();
+    if (methodTable == null) {
+      return null;
+    }
+    
+    final int index = methodTable.indexOf(name);
+    return index < 0 ? null : getMethod(index, methodTable);
+  }
+  
+  private RuntimeInstance getMethod(int index, MethodTable methodTable) {
+    RuntimeInstance [] boundMethods = this.boundMethods;
+    if (boundMethods == null) {
+      boundMethods = new RuntimeInstance[methodTable.getMethodCount()];
+      this.boundMethods = boundMethods;
+    }
+    
+    /*
+     * Threads racing here may each bind the method. Either bound 
+     * method is equivalent, so the last one stored is kept
+     */
+    RuntimeInstance method = boundMethods[index];
+    if (method == null) {
+      method = methodTable.bind(this, index);
+      boundMethods[index] = method;
+    }
+    return method;
+  }
+  
+  private void putModifierBits(String name, int modifierBits) {
+    final Shape shape = this.shape;
+    if (shape.isDictionary()) {
+      dictionaryModifiers.put(name, modifierBits);
+    }
+    else {
+      SHAPE.lazySet(this, shape.changeModifiers(shape.getSlot(name), modifierBits));
+    }
+  }
+  
+  /**
+   * Sets an attribute - along with its modifiers - with no checks 
+   * for whether this RuntimeInstance is sealed, or if the attribute is constant.
+   */
+  private void putAttr(String name, RuntimeInstance value, int modifierBits) {
+    final Shape shape = this.shape;
+    if (shape.isDictionary()) {
+      dictionary.put(name, value);
+      dictionaryModifiers.put(name, modifierBits);
+      return;
+    }
+    
+    final int slot = shape.getSlot(name);
+    if (slot >= 0) {
+      slots[slot] = value;
+      SHAPE.lazySet(this, shape.changeModifiers(slot, modifierBits));
+      return;
+    }
+    
+    final Shape next = shape.addAttr(name, modifierBits);
+    if (next.isDictionary()) {
+      toDictionary(shape);
+      dictionary.put(name, value);
+      dictionaryModifiers.put(name, modifierBits);
+      SHAPE.lazySet(this, next);
+      return;
+    }
+    
+    RuntimeInstance [] slots = this.slots;
+    final int newSlot = shape.getSlotCount();
+    if (newSlot >= slots.length) {
+      slots = Arrays.copyOf(slots, Math.max(4, slots.length * 2));
+    }
+    
+    slots[newSlot] = value;
+    SLOTS.lazySet(this, slots);
+    SHAPE.lazySet(this, next);
+  }
+  
+  private void toDictionary(Shape shape) {
+    final RuntimeInstance [] slots = this.slots;
+    
+    final Map<String, RuntimeInstance> dictionary = new ConcurrentHashMap<>();
+    final Map<String, Integer> dictionaryModifiers = new ConcurrentHashMap<>();
+    for (int i = 0; i < shape.getSlotCount(); i++) {
+      dictionary.put(shape.getName(i), slots[i]);
+      dictionaryModifiers.put(shape.getName(i), shape.getModifiers(i));
+    }
+    
+    /*
+     * The slot array is left as is: a reader that 
+     * read the old Shape may still index into it
+     */
+    this.dictionary = dictionary;
+    this.dictionaryModifiers = dictionaryModifiers;
+  }
+  
+  /*
+   * Attribute storage - END
+   */
 
   @Override
   public String toString() {
     String x = System.lineSeparator()+"================================"+System.lineSeparator();
-    for (Entry<String, RuntimeInstance> a : attributes.entrySet()) {
+    for (Entry<String, RuntimeInstance> a : getAttributes().entrySet()) {
       x += " => "+(a.getValue() == this)+" "+a.getKey()+" = "+ System.lineSeparator();
     }
     return x;
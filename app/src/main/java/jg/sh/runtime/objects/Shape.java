@@ -0,0 +1,235 @@
+package jg.sh.runtime.objects;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jg.sh.runtime.objects.RuntimeInstance.AttrModifier;
+
+/**
+ * Describes the attribute layout of a RuntimeInstance (a.k.a a "hidden class").
+ *
+ * A Shape maps attribute names to slot indexes - on a RuntimeInstance's slot array -
+ * and records the AttrModifiers of each attribute as bits.
+ *
+ * Shapes are immutable and form a tree rooted at ROOT. Adding an attribute (or changing
+ * an attribute's modifiers) moves an instance to a child Shape, and these transitions are cached.
+ * So, instances that gain the same attributes, in the same order and with the same modifiers,
+ * share the same Shape.
+ *
+ * Instances that gain more than MAX_SLOTS attributes leave the Shape tree and
+ * fall back to dictionary mode, which is marked by the DICTIONARY Shape.
+ *
+ * @author Jose
+ */
+public final class Shape {
+
+  /**
+   * Instances with more attributes than this fall back to dictionary mode
+   */
+  public static final int MAX_SLOTS = 64;
+
+  /**
+   * The Shape of an instance with no attributes.
+   */
+  public static final Shape ROOT = new Shape(Collections.emptyMap(), new String[0], new int[0]);
+
+  /**
+   * The Shape of all instances in dictionary mode. This Shape has no slots.
+   */
+  public static final Shape DICTIONARY = new Shape(Collections.emptyMap(), new String[0], new int[0]);
+
+  /**
+   * Amount of possible modifier bit combinations
+   */
+  private static final int MODIFIER_COMBINATIONS = 1 << AttrModifier.values().length;
+
+  private final Map<String, Integer> slots;
+  private final String [] names;
+  private final int [] modifiers;
+
+  /*
+   * Transitions to child shapes, keyed by attribute name.
+   *
+   * The array per name holds:
+   *  - at [bits]: the shape for adding that attribute with the given modifier bits
+   *  - at [MODIFIER_COMBINATIONS + bits]: the shape for changing that attribute's modifier bits
+   */
+  private volatile Map<String, Shape []> transitions;
+
+  private Shape(Map<String, Integer> slots, String [] names, int [] modifiers) {
+    this.slots = slots;
+    this.names = names;
+    this.modifiers = modifiers;
+  }
+
+  /**
+   * Returns the slot index of an attribute
+   * @param name - the name of the attribute
+   * @return the slot index of the attribute, or -1 if this Shape has no such attribute
+   */
+  public int getSlot(String name) {
+    final Integer slot = slots.get(name);
+    return slot == null ? -1 : slot;
+  }
+
+  /**
+   * @return the amount of slots described by this Shape
+   */
+  public int getSlotCount() {
+    return names.length;
+  }
+
+  /**
+   * Returns the name of the attribute at the given slot
+   * @param slot - the slot index
+   * @return the name of the attribute at the given slot
+   */
+  public String getName(int slot) {
+    return names[slot];
+  }
+
+  /**
+   * Returns the modifier bits of the attribute at the given slot
+   * @param slot - the slot index
+   * @return the modifier bits of the attribute at the given slot
+   */
+  public int getModifiers(int slot) {
+    return modifiers[slot];
+  }
+
+  /**
+   * @return the names of all attributes described by this Shape
+   */
+  public Set<String> getNames() {
+    return Collections.unmodifiableSet(slots.keySet());
+  }
+
+  public boolean isDictionary() {
+    return this == DICTIONARY;
+  }
+
+  /**
+   * Returns the child Shape for adding an attribute to this Shape.
+   *
+   * @param name - the name of the new attribute
+   * @param modifierBits - the modifier bits of the new attribute
+   * @return the child Shape, which places the new attribute at slot getSlotCount(),
+   *         or DICTIONARY if this Shape already has MAX_SLOTS attributes
+   */
+  public Shape addAttr(String name, int modifierBits) {
+    if (names.length >= MAX_SLOTS) {
+      return DICTIONARY;
+    }
+
+    Shape child = getTransition(name, modifierBits);
+    if (child == null) {
+      final Map<String, Integer> childSlots = new HashMap<>(slots);
+      childSlots.put(name, names.length);
+
+      final String [] childNames = Arrays.copyOf(names, names.length + 1);
+      childNames[names.length] = name;
+
+      final int [] childModifiers = Arrays.copyOf(modifiers, modifiers.length + 1);
+      childModifiers[modifiers.length] = modifierBits;
+
+      child = putTransition(name, modifierBits, new Shape(childSlots, childNames, childModifiers));
+    }
+    return child;
+  }
+
+  /**
+   * Returns the child Shape for changing the modifiers of an attribute of this Shape
+   *
+   * @param slot - the slot of the attribute
+   * @param modifierBits - the new modifier bits of the attribute
+   * @return the child Shape (or this Shape, if the modifiers are unchanged)
+   */
+  public Shape changeModifiers(int slot, int modifierBits) {
+    if (modifiers[slot] == modifierBits) {
+      return this;
+    }
+
+    final int index = MODIFIER_COMBINATIONS + modifierBits;
+
+    Shape child = getTransition(names[slot], index);
+    if (child == null) {
+      final int [] childModifiers = modifiers.clone();
+      childModifiers[slot] = modifierBits;
+
+      child = putTransition(names[slot], index, new Shape(slots, names, childModifiers));
+    }
+    return child;
+  }
+
+  private Shape getTransition(String name, int index) {
+    final Map<String, Shape []> transitions = this.transitions;
+    if (transitions == null) {
+      return null;
+    }
+
+    final Shape [] children = transitions.get(name);
+    return children == null ? null : children[index];
+  }
+
+  /*
+   * Transitions are rarely created (once per layout), so
+   * creating them is synchronized while looking them up isn't.
+   */
+  private synchronized Shape putTransition(String name, int index, Shape child) {
+    if (transitions == null) {
+      transitions = new ConcurrentHashMap<>();
+    }
+
+    final Shape [] children = transitions.computeIfAbsent(name, n -> new Shape[MODIFIER_COMBINATIONS * 2]);
+    if (children[index] == null) {
+      children[index] = child;
+    }
+    return children[index];
+  }
+
+  /**
+   * Converts AttrModifiers to their bit representation
+   * @param modifiers - the AttrModifiers
+   * @return the bit representation of the given AttrModifiers
+   */
+  public static int toBits(Collection<AttrModifier> modifiers) {
+    int bits = 0;
+    for (AttrModifier modifier : modifiers) {
+      bits |= toBit(modifier);
+    }
+    return bits;
+  }
+
+  public static int toBits(AttrModifier ... modifiers) {
+    int bits = 0;
+    for (AttrModifier modifier : modifiers) {
+      bits |= toBit(modifier);
+    }
+    return bits;
+  }
+
+  public static int toBit(AttrModifier modifier) {
+    return 1 << modifier.ordinal();
+  }
+
+  /**
+   * Converts modifier bits back to AttrModifiers
+   * @param bits - the modifier bits
+   * @return the AttrModifiers represented by the given bits
+   */
+  public static Set<AttrModifier> toModifiers(int bits) {
+    final EnumSet<AttrModifier> modifiers = EnumSet.noneOf(AttrModifier.class);
+    for (AttrModifier modifier : AttrModifier.values()) {
+      if ((bits & toBit(modifier)) != 0) {
+        modifiers.add(modifier);
+      }
+    }
+    return modifiers;
+  }
+}
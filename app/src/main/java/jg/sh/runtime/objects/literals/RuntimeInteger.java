@@ -1,6 +1,6 @@
 package jg.sh.runtime.objects.literals;
 
-public class RuntimeInteger extends RuntimePrimitive {
+public final class RuntimeInteger extends RuntimePrimitive {
 
   private final long value;
   
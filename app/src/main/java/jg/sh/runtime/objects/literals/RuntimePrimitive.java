@@ -1,10 +1,13 @@
 package jg.sh.runtime.objects.literals;
 
+import java.util.Collection;
 import java.util.Map;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 import jg.sh.runtime.alloc.Cleaner;
+import jg.sh.runtime.exceptions.OperationException;
+import jg.sh.runtime.objects.AttrCache;
 import jg.sh.runtime.objects.Initializer;
 import jg.sh.runtime.objects.RuntimeInstance;
 
@@ -15,6 +18,10 @@ import jg.sh.runtime.objects.RuntimeInstance;
  * because they are LITTERAL themselves. An integer is just an integer, a string a string, etc.
  * Unlike the other objects, these values are not a union of others.
  * 
+ * Primitives are immutable: they never hold attributes of their own, so they 
+ * only ever share the root Shape and an empty slot array. Their methods - such as
+ * operator hooks - come from a MethodTable shared by their type.
+ * 
  * @author Jose
  *
  */
@@ -22,10 +29,42 @@ public abstract class RuntimePrimitive extends RuntimeInstance {
 
   public RuntimePrimitive() {}
   
+  @Override
+  public void setAttribute(String name, RuntimeInstance valueAddr, AttrModifier... modifiers) throws OperationException {
+    throw immutable();
+  }
+  
+  @Override
+  public void setAttribute(String name, RuntimeInstance valueAddr, Collection<AttrModifier> modifiers) throws OperationException {
+    throw immutable();
+  }
+  
+  @Override
+  public void setAttrModifers(String name, Collection<AttrModifier> modifiers) throws OperationException {
+    throw immutable();
+  }
+  
+  @Override
+  public void appendAttrModifier(String name, AttrModifier... modifiers) throws OperationException {
+    throw immutable();
+  }
+  
+  /**
+   * Always misses, as primitives have no slots to store into
+   */
+  @Override
+  public boolean setCachedAttr(AttrCache cache, RuntimeInstance value) {
+    return false;
+  }
+  
   @Override
   public void gcMark(Cleaner cleaner) {
     return;
   }
 
   public abstract String toString();
+  
+  private OperationException immutable() {
+    return new OperationException("The "+getClass().getSimpleName()+" is a primitive and immutable");
+  }
 }
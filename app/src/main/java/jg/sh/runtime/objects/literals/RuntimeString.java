@@ -1,10 +1,14 @@
 package jg.sh.runtime.objects.literals;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import jg.sh.common.FunctionSignature;
 import jg.sh.modules.builtin.SystemModule;
 import jg.sh.runtime.exceptions.InvocationException;
 import jg.sh.runtime.loading.RuntimeModule;
 import jg.sh.runtime.objects.ArgVector;
+import jg.sh.runtime.objects.MethodTable;
 import jg.sh.runtime.objects.RuntimeInstance;
 import jg.sh.runtime.objects.callable.Callable;
 import jg.sh.runtime.objects.callable.ImmediateInternalCallable;
@@ -101,6 +105,18 @@ public final class RuntimeString extends RuntimePrimitive {
     }
   );
   
+  private static final MethodTable METHODS;
+  
+  static {
+    final Map<String, InternalFunction> methods = new LinkedHashMap<>();
+    methods.put(FuncOperatorCoupling.LESS.getFuncName(), LESS);
+    methods.put(FuncOperatorCoupling.GREAT.getFuncName(), GREAT);
+    methods.put(FuncOperatorCoupling.LESSE.getFuncName(), LESSE);
+    methods.put(FuncOperatorCoupling.GREATE.getFuncName(), GREATE);
+    methods.put(FuncOperatorCoupling.EQUAL.getFuncName(), EQUAL);
+    methods.put(FuncOperatorCoupling.NOTEQUAL.getFuncName(), NOT_EQUAL);
+    METHODS = new MethodTable(methods);
+  }
 
   private final String value;
   
@@ -109,6 +125,11 @@ public final class RuntimeString extends RuntimePrimitive {
     this.value = value;
   }
   
+  @Override
+  protected MethodTable getMethodTable() {
+    return METHODS;
+  }
+  
   public String getValue() {
     return value;
   }
@@ -1,11 +1,16 @@
 package jg.sh.runtime.threading;
 
+import java.io.PrintStream;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+import jg.sh.InterpreterOptions;
 import jg.sh.InterpreterOptions.IOption;
 import jg.sh.runtime.alloc.Cleaner;
 import jg.sh.runtime.alloc.HeapAllocator;
@@ -37,6 +42,11 @@ public class ThreadManager {
   private final Lock completionLock;
   private final Condition complCond;
   
+  /*
+   * Runs the timeouts of Fibers waiting for other Fibers. Created once first needed
+   */
+  private ScheduledExecutorService timeouts;
+  
   private volatile boolean stopScheduling;
   
   /**
@@ -52,7 +62,10 @@ public class ThreadManager {
     this.options = options;
     this.allFibers = new ConcurrentHashMap<>();
     this.cleaner = cleaner;
-    this.threadPool = new ThreadPool((int) options.get(IOption.POOL_SIZE), this::reportFiber);
+    this.threadPool = new ThreadPool((int) options.get(IOption.POOL_SIZE), 
+                                     options.containsKey(IOption.WORK_STEALING) && (boolean) options.get(IOption.WORK_STEALING),
+                                     (int) options.getOrDefault(IOption.TIME_SLICE, InterpreterOptions.DEFAULT_TIME_SLICE),
+                                     this::reportFiber);
 
     this.completionLock = new ReentrantLock();
     this.complCond = completionLock.newCondition();
@@ -74,6 +87,8 @@ public class ThreadManager {
 
     if (f.getStatus() == FiberStatus.COMPLETED || 
         f.getStatus() == FiberStatus.TERMINATED) {
+      //Resume the fibers waiting on this one, before it's removed
+      f.finish();
       allFibers.remove(f.getFiberID());
 
       if (allFibers.isEmpty()) {
@@ -95,6 +110,22 @@ public class ThreadManager {
     threadPool.queueFiber(fiber);
   }
   
+  /**
+   * Runs a task after a delay, such as the timeout of a Fiber waiting for another
+   * @param task - the task to run
+   * @param millis - the delay, in milliseconds
+   */
+  public synchronized void scheduleTimeout(Runnable task, long millis) {
+    if (timeouts == null) {
+      timeouts = Executors.newSingleThreadScheduledExecutor(r -> {
+        final Thread thread = new Thread(r, "Fiber Timeouts");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    timeouts.schedule(task, millis, TimeUnit.MILLISECONDS);
+  }
+  
   /**
    * Creates and schedules a Fiber for execution
    * @param callable - the function to execute on this Fiber
@@ -180,6 +211,12 @@ public class ThreadManager {
   public void stop() {
     stopScheduling = true;
     threadPool.stop();
+    
+    synchronized (this) {
+      if (timeouts != null) {
+        timeouts.shutdownNow();
+      }
+    }
   }
 
   /**
@@ -190,6 +227,15 @@ public class ThreadManager {
     return stopScheduling;
   }
 
+  /**
+   * Prints how long the worker threads of this ThreadManager have been idle, 
+   * waiting for Fibers to run
+   * @param out - the PrintStream to print to
+   */
+  public void reportIdleTimes(PrintStream out) {
+    threadPool.getTaskQueue().report(out);
+  }
+
   /**
    * Returns the map of interpreter options provided to this ThreadManager
    * @return the map of interpreter options provided to this ThreadManager
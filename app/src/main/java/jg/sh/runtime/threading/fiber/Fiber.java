@@ -1,26 +1,33 @@
 package jg.sh.runtime.threading.fiber;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Stack;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 import jg.sh.common.FunctionSignature;
-import jg.sh.modules.builtin.SystemModule;
 import jg.sh.runtime.alloc.Cleaner;
 import jg.sh.runtime.alloc.HeapAllocator;
 import jg.sh.runtime.exceptions.InvocationException;
 import jg.sh.runtime.loading.ModuleFinder;
-import jg.sh.runtime.loading.RuntimeModule;
 import jg.sh.runtime.objects.ArgVector;
 import jg.sh.runtime.objects.Initializer;
+import jg.sh.runtime.objects.MethodTable;
+import jg.sh.runtime.objects.RuntimeError;
 import jg.sh.runtime.objects.RuntimeInstance;
 import jg.sh.runtime.objects.RuntimeNull;
 import jg.sh.runtime.objects.callable.Callable;
 import jg.sh.runtime.objects.callable.InternalFunction;
-import jg.sh.runtime.objects.callable.ImmediateInternalCallable;
+import jg.sh.runtime.objects.callable.RuntimeInternalCallable;
+import jg.sh.runtime.objects.literals.RuntimeInteger;
 import jg.sh.runtime.threading.ThreadManager;
+import jg.sh.runtime.threading.frames.FramePool;
 import jg.sh.runtime.threading.frames.StackFrame;
 import jg.sh.runtime.threading.pool.ThreadPool;
 
@@ -95,16 +102,113 @@ public class Fiber extends RuntimeInstance {
     }
   );
   
+  /**
+   * The keyword parameter of calls that may wait - such as join() and await() - 
+   * setting the most milliseconds to wait for
+   */
+  public static final String TIMEOUT_PARAM = "timeout";
+  
+  private static final FunctionSignature JOIN_SIGNATURE = 
+    new FunctionSignature(0, Collections.singleton(TIMEOUT_PARAM));
+  
+  /*
+   * Waits for the fiber to complete, returning true - or 
+   * false if the timeout elapsed first.
+   */
+  private static final InternalFunction JOIN = 
+  create(
+    Fiber.class,
+    JOIN_SIGNATURE, 
+    (fiber, self, callable, args) -> {
+      return self.join(fiber, getTimeout(callable, args));
+    }
+  );
+  
+  /*
+   * Waits for the fiber to complete, returning its result - or raising its 
+   * uncaught error, or an error if the timeout elapsed first.
+   */
+  private static final InternalFunction AWAIT = 
+  create(
+    Fiber.class,
+    JOIN_SIGNATURE, 
+    (fiber, self, callable, args) -> {
+      return self.await(fiber, getTimeout(callable, args));
+    }
+  );
+  
+  private static final MethodTable METHODS;
+  
+  static {
+    final Map<String, InternalFunction> methods = new LinkedHashMap<>();
+    methods.put("startTime", START_TIME_GETTER);
+    methods.put("endTime", END_TIME_GETTER);
+    methods.put("getID", FIBER_ID_GETTER);
+    methods.put("getStatus", FIBER_STATUS_GETTER);
+    methods.put("start", START);
+    methods.put("join", JOIN);
+    methods.put("await", AWAIT);
+    METHODS = new MethodTable(methods, AttrModifier.CONSTANT);
+  }
+  
+  /**
+   * A Fiber waiting for another to complete (see join())
+   */
+  private static class Joiner {
+    private final Fiber waiter;
+    
+    /*
+     * If true, the waiter is resumed with the other Fiber's result. 
+     * Otherwise, it's resumed with whether the other Fiber completed.
+     */
+    private final boolean await;
+    
+    private Joiner(Fiber waiter, boolean await) {
+      this.waiter = waiter;
+      this.await = await;
+    }
+  }
+  
   private final HeapAllocator allocator;
   private final ModuleFinder finder;
   private final ThreadManager manager;
-  private final Stack<StackFrame> callStack;
+  private final Deque<StackFrame> callStack;
+  private final FramePool framePool;
   private final Cleaner cleaner;
   private final int fiberID;
   protected final Consumer<Fiber> fiberReporter;
     
   private RuntimeInstance leftOver;
   private InvocationException leftOverException;
+  
+  /*
+   * The amount of instructions this Fiber may still execute 
+   * before yielding (see advance())
+   */
+  private long budget;
+  
+  /*
+   * Joining - as the Fiber being waited on. Guarded by this Fiber.
+   * 
+   * Once finished, this Fiber no longer takes Joiners and 
+   * instead gives its outcome right away.
+   */
+  private List<Joiner> joiners;
+  private boolean finished;
+  
+  /*
+   * Suspension - as the waiting Fiber. Guarded by this Fiber, except for suspending
+   * 
+   * A Fiber that joins another - or blocks on a channel - is first suspended, which makes 
+   * it yield. Once its runner has let go of it, it's parked - off of the task queue - until 
+   * resumed with the outcome of what it waited on (see resume())
+   */
+  private volatile boolean suspending;
+  private Object suspension;
+  private boolean parked;
+  private boolean resumable;
+  private RuntimeInstance resumeValue;
+  private RuntimeError resumeError;
 
   /**
    * The time (in nanoseconds) this fiber had its first frame advanced - marking the start of this fiber
@@ -139,25 +243,14 @@ public class Fiber extends RuntimeInstance {
                Cleaner cleaner,
                Consumer<Fiber> fiberReporter,
                BiConsumer<Initializer, RuntimeInstance> initializer) {
-    super((ini, self) -> {
-      final RuntimeModule systemModule =  SystemModule.getNativeModule().getModule();
-
-      ini.init("startTime", new ImmediateInternalCallable(systemModule, self, START_TIME_GETTER), AttrModifier.CONSTANT);
-      ini.init("endTime", new ImmediateInternalCallable(systemModule, self, END_TIME_GETTER), AttrModifier.CONSTANT);
-      ini.init("getID", new ImmediateInternalCallable(systemModule, self, FIBER_ID_GETTER), AttrModifier.CONSTANT);
-      ini.init("getStatus", new ImmediateInternalCallable(systemModule, self, FIBER_STATUS_GETTER), AttrModifier.CONSTANT);
-      ini.init("start", new ImmediateInternalCallable(systemModule, self, START), AttrModifier.CONSTANT);
-
-      if (initializer != null) {
-        initializer.accept(ini, self);
-      }
-    });
+    super(initializer);
     
     this.allocator = allocator;
     this.finder = finder;
     this.manager = manager;
     this.cleaner = cleaner;
-    this.callStack = new Stack<>();
+    this.callStack = new ArrayDeque<>();
+    this.framePool = new FramePool();
     this.fiberID = FIBER_ID_COUNTER++;
     this.startTime = -1;
     this.endTime = -1;
@@ -210,52 +303,377 @@ public class Fiber extends RuntimeInstance {
    * Advances this Fiber by one function frame.
    */
   public void advanceFrame() {
-    if (!callStack.isEmpty()) {
-      StackFrame topFrame = callStack.pop();
-
-      //Set start time, if needed
-      startTime = startTime < 0 ? System.nanoTime() : startTime;
-      
-      StackFrame current = topFrame.run(allocator, this);
-      if (current == null) {
-        //error flag set, or frame was done (returned value)
-        if (topFrame.hasError()) {
-          //error flag was set
-          if (!callStack.isEmpty()) {
-            callStack.peek().returnError(topFrame.getError().getErrorObject());
-          }
-          else {
-            leftOverException = topFrame.getError();
-          }
+    advance(1);
+  }
+
+  /**
+   * Charges executed instructions to this Fiber's time slice.
+   * 
+   * Frames charge their instructions on backward jumps, calls and returns (see FunctionFrame.run())
+   * @param instructions - the amount of instructions executed
+   * @return true if this Fiber's time slice is exhausted, and it should yield
+   */
+  public boolean consumeBudget(int instructions) {
+    return (budget -= instructions) <= 0;
+  }
+
+  /**
+   * Advances this Fiber for a time slice, measured in executed instructions.
+   * 
+   * Calls and returns are handled here, without leaving this method: 
+   * the running frame is kept aside from the call stack, and only 
+   * its callers are held on the call stack. So, a call only pushes the caller, 
+   * and a return only pops it back.
+   * 
+   * Once the time slice is exhausted, this Fiber yields - letting others advance - 
+   * either on its next call or return, or on a loop's backward jump.
+   * 
+   * @param instructionBudget - the amount of instructions after which this Fiber yields
+   */
+  public void advance(long instructionBudget) {
+    if (callStack.isEmpty()) {
+      return;
+    }
+
+    //Set start time, if needed
+    startTime = startTime < 0 ? System.nanoTime() : startTime;
+
+    budget = instructionBudget;
+
+    StackFrame frame = callStack.pop();
+    while (budget > 0 && !suspending) {
+      final StackFrame callee = frame.run(allocator, this);
+      if (callee == frame) {
+        //Preempted mid-frame, or suspended by a join
+        break;
+      }
+      else if (callee != null) {
+        //A call. The caller resumes once the callee returns
+        if (!frame.isDone()) {
+          callStack.push(frame);
+        }
+        frame = callee;
+      }
+      else if (callStack.isEmpty()) {
+        //The bottom frame is done, which completes this fiber
+        if (frame.hasError()) {
+          leftOverException = frame.getError();
         }
         else {
-          //topFrame is done.
-          if (!callStack.isEmpty()) {
-            callStack.peek().pushOperand(topFrame.popOperand());
-          }
-          else {
-            //System.out.println("   -> got new frame: "+topFrame.hasOperand()+" | "+topFrame.hashCode()+" | "+topFrame.getClass());
-            leftOver = topFrame.hasOperand() ? topFrame.popOperand() : null;
-          }
-        }    
+          leftOver = frame.hasOperand() ? frame.popOperand() : null;
+        }
+        return;
       }
       else {
-        if(!topFrame.isDone()) {
-          callStack.push(topFrame);
+        //error flag set, or frame was done (returned value)
+        final StackFrame caller = callStack.pop();
+        if (frame.hasError()) {
+          caller.returnError(frame.getError().getErrorObject());
+        }
+        else {
+          frame.moveOperandTo(caller);
         }
-        callStack.push(current);
-      }      
-    }        
+        framePool.release(frame);
+        frame = caller;
+      }
+    }
+
+    //Out of budget. Put back the running frame until this fiber is advanced again
+    callStack.push(frame);
+  }
+  
+  /**
+   * Whether this Fiber has been suspended, and should yield until it's resumed.
+   * 
+   * Frames calling into a join - or a blocking channel operation - check 
+   * this to know to yield (see FunctionFrame.call())
+   * @return true if this Fiber has been suspended
+   */
+  public boolean isSuspending() {
+    return suspending;
+  }
+  
+  /**
+   * Parks this Fiber if it has been suspended, once its runner has let go of it.
+   * 
+   * If this Fiber has already been resumed, the outcome is given to it 
+   * right away and it isn't parked.
+   * @return true if this Fiber has been parked - and so mustn't be ran until it's resumed.
+   */
+  public synchronized boolean park() {
+    if (!suspending) {
+      return false;
+    }
+    
+    if (resumable) {
+      deliverResume();
+      return false;
+    }
+    
+    parked = true;
+    status = FiberStatus.WAITING;
+    return true;
+  }
+  
+  /**
+   * @return true if this Fiber is parked, waiting to be resumed
+   */
+  public synchronized boolean isParked() {
+    return parked;
+  }
+  
+  /**
+   * Marks this Fiber as finished, resuming the Fibers waiting for it.
+   * 
+   * This is called once this Fiber has completed or terminated (see ThreadManager.reportFiber())
+   */
+  public void finish() {
+    final List<Joiner> joiners;
+    synchronized (this) {
+      finished = true;
+      joiners = this.joiners;
+      this.joiners = null;
+    }
+    
+    if (joiners != null) {
+      for (Joiner joiner : joiners) {
+        release(joiner);
+      }
+    }
+  }
+  
+  /**
+   * Has a Fiber wait for this Fiber to complete, giving back whether it did (see join(Fiber, boolean, long))
+   * @param waiter - the Fiber to wait
+   * @param timeout - the most milliseconds to wait for, or -1 to wait indefinitely
+   * @return whether this Fiber completed - or RuntimeNull.NULL as a placeholder if the waiter has been suspended
+   * @throws InvocationException - if the waiter is this Fiber
+   */
+  public RuntimeInstance join(Fiber waiter, long timeout) throws InvocationException {
+    return join(waiter, false, timeout);
+  }
+  
+  /**
+   * Has a Fiber wait for this Fiber to complete, giving back its result (see join(Fiber, boolean, long))
+   * @param waiter - the Fiber to wait
+   * @param timeout - the most milliseconds to wait for, or -1 to wait indefinitely
+   * @return the result of this Fiber - or RuntimeNull.NULL as a placeholder if the waiter has been suspended
+   * @throws InvocationException - if this Fiber completed with an error, or hasn't completed within the timeout
+   */
+  public RuntimeInstance await(Fiber waiter, long timeout) throws InvocationException {
+    return join(waiter, true, timeout);
+  }
+  
+  /**
+   * Suspends this Fiber, having it yield once the current call returns - 
+   * and wait until it's resumed.
+   * 
+   * The call that suspends this Fiber should return a placeholder,
+   * which is replaced by the value this Fiber is resumed with.
+   * @param suspension - identifies what this Fiber waits on, to be given back to resume()
+   */
+  public synchronized void suspend(Object suspension) {
+    this.suspension = suspension;
+    suspending = true;
+  }
+  
+  /**
+   * Resumes this Fiber from a suspension, re-queuing it if it's been parked.
+   * @param suspension - the suspension to resume from, as given to suspend()
+   * @param value - the value to resume with, or null if resuming with an error
+   * @param error - the error to resume with, or null if resuming with a value
+   * @return true if this Fiber was resumed, false if the suspension has already been resumed
+   *         (such as by a timeout racing a completion)
+   */
+  public synchronized boolean resume(Object suspension, RuntimeInstance value, RuntimeError error) {
+    if (this.suspension != suspension || resumable) {
+      return false;
+    }
+    
+    resumeValue = value;
+    resumeError = error;
+    resumable = true;
+    
+    if (parked) {
+      parked = false;
+      deliverResume();
+      wake();
+    }
+    return true;
+  }
+  
+  /**
+   * Wakes this Fiber after it's been resumed, by re-queuing it
+   */
+  protected void wake() {
+    manager.queueFiber(this);
   }
   
   /*
    * PRIVATE UTILITY METHODS - start
    */
-
+  
+  /**
+   * Has a Fiber wait for this Fiber to complete.
+   * 
+   * If this Fiber hasn't finished yet, the waiting Fiber is suspended - yielding
+   * once this returns - and is resumed once this Fiber finishes or the timeout elapses.
+   * 
+   * @param waiter - the Fiber to wait
+   * @param await - whether to give the waiting Fiber this Fiber's result, rather
+   *                than whether it has completed
+   * @param timeout - the most milliseconds to wait for, or -1 to wait indefinitely
+   * @return the outcome if it's already known, or RuntimeNull.NULL as a placeholder 
+   *         - to be replaced by the outcome - if the waiting Fiber has been suspended
+   * @throws InvocationException - if the outcome is an error
+   */
+  private RuntimeInstance join(Fiber waiter, boolean await, long timeout) throws InvocationException {
+    if (waiter == this) {
+      throw new InvocationException("A fiber can't wait for itself", null);
+    }
+    
+    final Joiner joiner = new Joiner(waiter, await);
+    synchronized (this) {
+      if (finished) {
+        return outcome(joiner);
+      }
+    }
+    
+    if (timeout == 0) {
+      return timedOut(joiner);
+    }
+    
+    /*
+     * Suspend the waiter before taking it on as a Joiner, so that 
+     * this Fiber finishing right after can resume it.
+     * 
+     * Both Fibers' monitors are never held at once, as two Fibers may join each other.
+     */
+    waiter.suspend(joiner);
+    
+    final boolean finished;
+    synchronized (this) {
+      finished = this.finished;
+      if (!finished) {
+        if (joiners == null) {
+          joiners = new ArrayList<>();
+        }
+        joiners.add(joiner);
+      }
+    }
+    
+    if (finished) {
+      //Finished in the meantime
+      release(joiner);
+      return RuntimeNull.NULL;
+    }
+    
+    if (timeout > 0) {
+      manager.scheduleTimeout(() -> {
+        if (waiter.resume(joiner, timedOutValue(joiner), timedOutError(joiner))) {
+          synchronized (this) {
+            if (joiners != null) {
+              joiners.remove(joiner);
+            }
+          }
+        }
+      }, timeout);
+    }
+    
+    return RuntimeNull.NULL;
+  }
+  
+  /**
+   * Resumes a Joiner with the outcome of this - finished - Fiber
+   */
+  private void release(Joiner joiner) {
+    if (joiner.await && leftOverException != null) {
+      joiner.waiter.resume(joiner, null, errorOf(leftOverException));
+    }
+    else {
+      joiner.waiter.resume(joiner, joiner.await ? resultOf() : allocator.allocateBool(true), null);
+    }
+  }
+  
+  /**
+   * The outcome of a join on this - finished - Fiber, for a join that need not wait
+   */
+  private RuntimeInstance outcome(Joiner joiner) throws InvocationException {
+    if (joiner.await && leftOverException != null) {
+      throw new InvocationException(errorOf(leftOverException), null);
+    }
+    return joiner.await ? resultOf() : allocator.allocateBool(true);
+  }
+  
+  /**
+   * The outcome of a join on this - unfinished - Fiber, for a join that need not wait
+   */
+  private RuntimeInstance timedOut(Joiner joiner) throws InvocationException {
+    if (joiner.await) {
+      throw new InvocationException(timedOutError(joiner), null);
+    }
+    return timedOutValue(joiner);
+  }
+  
+  private RuntimeInstance timedOutValue(Joiner joiner) {
+    return joiner.await ? null : allocator.allocateBool(false);
+  }
+  
+  private RuntimeError timedOutError(Joiner joiner) {
+    return joiner.await ? allocator.allocateError("Timed out awaiting fiber "+fiberID) : null;
+  }
+  
+  private RuntimeInstance resultOf() {
+    return leftOver != null ? leftOver : RuntimeNull.NULL;
+  }
+  
+  private RuntimeError errorOf(InvocationException exception) {
+    return exception.isWrapper() ? exception.getErrorObject() : allocator.allocateError(exception.getMessage());
+  }
+  
+  /**
+   * Gives the outcome of a suspension to the frame that suspended, replacing 
+   * the placeholder it was given (see suspend())
+   */
+  private void deliverResume() {
+    final StackFrame frame = callStack.peek();
+    if (resumeError != null) {
+      frame.returnError(resumeError);
+    }
+    else {
+      frame.popOperand();
+      frame.pushOperand(resumeValue);
+    }
+    
+    suspension = null;
+    resumable = false;
+    resumeValue = null;
+    resumeError = null;
+    suspending = false;
+  }
   
   /*
    * PRIVATE UTILITY METHODS - end 
    */
+  
+  /**
+   * Reads the "timeout" keyword argument of a call that may wait
+   * @param callable - the callable being called
+   * @param args - the arguments of the call
+   * @return the timeout, in milliseconds, or -1 if none was given
+   * @throws InvocationException - if the timeout isn't a non-negative integer
+   */
+  public static long getTimeout(RuntimeInternalCallable callable, ArgVector args) throws InvocationException {
+    if (!args.hasKeywordArg(TIMEOUT_PARAM)) {
+      return -1;
+    }
+    
+    final RuntimeInstance timeout = args.getKeywordArgs().get(TIMEOUT_PARAM);
+    if (timeout instanceof RuntimeInteger && ((RuntimeInteger) timeout).getValue() >= 0) {
+      return ((RuntimeInteger) timeout).getValue();
+    }
+    throw new InvocationException("The timeout must be a non-negative integer, in milliseconds", callable);
+  }
 
    public int getFiberID() {
     return fiberID;
@@ -311,11 +729,19 @@ public class Fiber extends RuntimeInstance {
     return leftOverException != null;
   }
   
+  /**
+   * Returns the FramePool of this Fiber, which recycles the frames of returned calls
+   * @return the FramePool of this Fiber
+   */
+  public FramePool getFramePool() {
+    return framePool;
+  }
+  
   /**
    * Returns the call stack of this Executor
    * @return the call stack of this Executor.
    */
-  public Stack<StackFrame> getCallStack() {
+  public Deque<StackFrame> getCallStack() {
     return callStack;
   }
   
@@ -347,6 +773,11 @@ public class Fiber extends RuntimeInstance {
     return endTime;
   }
 
+  @Override
+  protected MethodTable getMethodTable() {
+    return METHODS;
+  }
+
   /**
    * Returns the current {@link FiberStatus} of this Fiber
    * @return the current {@link FiberStatus} of this Fiber
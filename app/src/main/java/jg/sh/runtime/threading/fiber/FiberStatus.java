@@ -18,6 +18,12 @@ public enum FiberStatus {
    * The Fiber is currently waiting in the task queue of the interpreter's worker pool.
    */
   IN_QUEUE,
+  
+  /**
+   * The Fiber is waiting for another Fiber to complete. It's 
+   * off of the task queue until then (see Fiber.park())
+   */
+  WAITING,
 
   /**
    * The Fiber has been termianted due to an uncaught exception.
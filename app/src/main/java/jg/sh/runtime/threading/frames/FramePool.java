@@ -0,0 +1,82 @@
+package jg.sh.runtime.threading.frames;
+
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import jg.sh.runtime.alloc.HeapAllocator;
+import jg.sh.runtime.objects.ArgVector;
+import jg.sh.runtime.objects.RuntimeCodeObject;
+import jg.sh.runtime.objects.callable.RuntimeCallable;
+
+/**
+ * A free-list of FunctionFrames, bucketed by the RuntimeCodeObject they run.
+ *
+ * A FunctionFrame that has returned is reset and kept, to be reused by
+ * the next call to the same RuntimeCodeObject. As a frame's arrays are sized
+ * by its RuntimeCodeObject, a reused frame needs no new allocations.
+ *
+ * Only frames that return normally are recycled. Frames that complete with
+ * an error are left to the garbage collector, as their error may still be in flight.
+ * Closures capture CellReferences (rather than frames), so they never pin a frame.
+ *
+ * Each Fiber has its own FramePool, so a FramePool needs no synchronization.
+ *
+ * @author Jose
+ */
+public class FramePool {
+
+  /**
+   * The most frames kept per RuntimeCodeObject. This bounds the memory held
+   * after a deep recursion unwinds.
+   */
+  private static final int MAX_FRAMES_PER_CODE = 64;
+
+  private final Map<RuntimeCodeObject, ArrayDeque<FunctionFrame>> freeFrames;
+
+  public FramePool() {
+    this.freeFrames = new IdentityHashMap<>();
+  }
+
+  /**
+   * Retrieves a FunctionFrame to call a RuntimeCallable, reusing a free frame if there is one.
+   * @param callable - the RuntimeCallable being called
+   * @param args - the arguments of the call, or null if the call has no ArgVector
+   * @param allocator - the HeapAllocator to use
+   * @return a FunctionFrame ready to have its local variables set
+   */
+  public FunctionFrame acquire(RuntimeCallable callable, ArgVector args, HeapAllocator allocator) {
+    final ArrayDeque<FunctionFrame> frames = freeFrames.get(callable.getCodeObject());
+    if (frames == null || frames.isEmpty()) {
+      return new FunctionFrame(callable.getHostModule(), callable, 0, args, allocator);
+    }
+
+    final FunctionFrame frame = frames.pop();
+    frame.reinit(callable, args);
+    return frame;
+  }
+
+  /**
+   * Releases a StackFrame that has returned, so it may be reused.
+   *
+   * Only FunctionFrames that completed without an error are kept.
+   * @param frame - the StackFrame that has returned
+   */
+  public void release(StackFrame frame) {
+    if (!(frame instanceof FunctionFrame) || frame.hasError()) {
+      return;
+    }
+
+    final FunctionFrame functionFrame = (FunctionFrame) frame;
+    ArrayDeque<FunctionFrame> frames = freeFrames.get(functionFrame.getCodeObject());
+    if (frames == null) {
+      frames = new ArrayDeque<>();
+      freeFrames.put(functionFrame.getCodeObject(), frames);
+    }
+
+    if (frames.size() < MAX_FRAMES_PER_CODE) {
+      functionFrame.reset();
+      frames.push(functionFrame);
+    }
+  }
+}
@@ -2,16 +2,14 @@ package jg.sh.runtime.threading.frames;
 
 import java.util.Set;
 import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.BiConsumer;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import jg.sh.compile.instrs.ArgInstr;
-import jg.sh.compile.instrs.Instruction;
-import jg.sh.compile.instrs.LoadCellInstr;
+import jg.sh.common.FunctionSignature;
 import jg.sh.compile.instrs.OpCode;
-import jg.sh.compile.instrs.StoreCellInstr;
 import jg.sh.parsing.token.TokenType;
 import jg.sh.runtime.alloc.CellReference;
 import jg.sh.runtime.alloc.Cleaner;
@@ -19,16 +17,18 @@ import jg.sh.runtime.alloc.HeapAllocator;
 import jg.sh.runtime.exceptions.CallSiteException;
 import jg.sh.runtime.exceptions.InvocationException;
 import jg.sh.runtime.exceptions.OperationException;
-import jg.sh.runtime.loading.ContextualInstr;
-import jg.sh.runtime.loading.IndexedJumpInstr;
+import jg.sh.runtime.jit.BaselineCompiler;
+import jg.sh.runtime.jit.CompiledFunction;
 import jg.sh.runtime.loading.RuntimeModule;
 import jg.sh.runtime.objects.ArgVector;
+import jg.sh.runtime.objects.AttrCache;
 import jg.sh.runtime.objects.RuntimeArray;
 import jg.sh.runtime.objects.RuntimeCodeObject;
 import jg.sh.runtime.objects.RuntimeDataRecord;
 import jg.sh.runtime.objects.RuntimeError;
 import jg.sh.runtime.objects.RuntimeInstance;
 import jg.sh.runtime.objects.RuntimeNull;
+import jg.sh.runtime.objects.Shape;
 import jg.sh.runtime.objects.RuntimeInstance.AttrModifier;
 import jg.sh.runtime.objects.callable.Callable;
 import jg.sh.runtime.objects.callable.RuntimeCallable;
@@ -55,8 +55,14 @@ public class FunctionFrame extends StackFrame {
 
   static volatile int frameMarker = 0;
 
-  private final RuntimeCallable callable;
-  private final ContextualInstr [] instrs;
+  private RuntimeCallable callable;
+  private final RuntimeCodeObject codeObject;
+  private final RuntimeInstance [] constants;
+  private final AtomicReferenceArray<RuntimeInstance> moduleVariables;
+  private final int [] code;
+  private final int [] exceptionJumps;
+  private final AttrCache [] attrCaches;
+  private final int [] executionCounts;
 
   private int instrIndex;
 
@@ -69,44 +75,99 @@ public class FunctionFrame extends StackFrame {
    * value of that constructor with the allocated instance.
    * 
    * With this place holder variable, we can signal to the next invocation of
-   * run() that we need to push the value of "passOver" on the operand stack first.
+   * run() that we need to replace the constructor's return value on the operand 
+   * stack with the value of "passOver".
    * 
    */
   private RuntimeInstance passOver;
   
+  /*
+   * The instruction index from which executed instructions are yet to be 
+   * charged to the running Fiber's time slice (see Fiber.consumeBudget())
+   */
+  private int checkpoint;
+  
   public FunctionFrame(RuntimeModule hostModule, 
                        RuntimeCallable callable, 
                        int instrIndex, 
-                       ArgVector initialArgs) {
-    super(hostModule, initialArgs);
+                       ArgVector initialArgs,
+                       HeapAllocator allocator) {
+    super(hostModule, 
+          initialArgs, 
+          allocator,
+          callable.getCodeObject().getLocalVarCount(), 
+          callable.getCodeObject().getMaxStackDepth());
     this.callable = callable;
-    this.instrs = callable.getCodeObject().getInstrs();
+    this.codeObject = callable.getCodeObject();
+    this.constants = callable.getHostModule().getConstants();
+    this.moduleVariables = callable.getHostModule().getVariables();
+    this.code = codeObject.getCode();
+    this.exceptionJumps = codeObject.getExceptionJumps();
+    this.attrCaches = codeObject.getAttrCaches();
+    this.executionCounts = codeObject.getExecutionCounts();
     this.instrIndex = instrIndex;
+    
+    if (codeObject.heat()) {
+      jitCompile();
+    }
   }  
+  
+  /**
+   * Readies this frame - after being reset - for a new call to the same code object (see FramePool)
+   * @param callable - the RuntimeCallable being called
+   * @param initialArgs - the arguments of the call, or null if the call has no ArgVector
+   */
+  void reinit(RuntimeCallable callable, ArgVector initialArgs) {
+    this.callable = callable;
+    this.initialArgs = initialArgs;
+    this.instrIndex = 0;
+    this.passOver = null;
+    
+    if (codeObject.heat()) {
+      jitCompile();
+    }
+  }
 
+  /**
+   * Runs this frame, charging the instructions it executes to the Fiber's time slice.
+   * 
+   * Instructions are charged on backward jumps - where a loop may be preempted - and
+   * when this frame calls or returns.
+   */
   @Override
   public StackFrame run(HeapAllocator allocator, Fiber thread) {
+    checkpoint = instrIndex;
+    final StackFrame next = execute(allocator, thread);
+    if (next != this) {
+      thread.consumeBudget(Math.max(1, instrIndex - checkpoint));
+    }
+    return next;
+  }
+  
+  private StackFrame execute(HeapAllocator allocator, Fiber thread) {
 
     /**
      * Use solely by CALL when doing data definition instantiation.
      * See comments for passOver
      */
     if (passOver != null) {
-      pushOperand(passOver);
+      if (!hasError()) {
+        popOperand();
+        pushOperand(passOver);
+      }
       passOver = null;
     }
 
     /*
     System.out.println(" ====> returning: "+getInstrIndex()+" | "+
-                        instrs.length+" | "+
-                        instrs[instrs.length - 1].getInstr()+" | "+
+                        exceptionJumps.length+" | "+
                         hasError()+" | "+
-                        instrs[instrs.length - 1].getExceptionJumpIndex());
+                        exceptionJumps[exceptionJumps.length - 1]);
     */
 
     if (getError() != null) {
-      if (hasInstrLeft() && getCurrInstr().getExceptionJumpIndex() >= 0) {
-        setInstrIndex(getCurrInstr().getExceptionJumpIndex());
+      if (hasInstrLeft() && getCurrExceptionJump() >= 0) {
+        setInstrIndex(getCurrExceptionJump());
       }
       else {
         return null;
@@ -115,11 +176,15 @@ public class FunctionFrame extends StackFrame {
     
     while (hasInstrLeft()) {
       
-      final ContextualInstr current = getCurrInstr();
-      final Instruction instr = current.getInstr();
-      final OpCode op = instr.getOpCode();
+      final int current = instrIndex;
+      final OpCode op = OpCode.fromOrdinal(code[current * RuntimeCodeObject.INSTR_WIDTH]);
+      final int arg = code[current * RuntimeCodeObject.INSTR_WIDTH + 1];
       
-      //System.out.println(instr+" | "+instr.getStart());
+      //System.out.println(op+" "+arg+" | "+current);
+      
+      if (executionCounts != null) {
+        executionCounts[current]++;
+      }
       
       switch (op) {
         //Ineffectual instructions. They just fall through
@@ -170,8 +235,8 @@ public class FunctionFrame extends StackFrame {
               } catch (CallSiteException e) {
                 RuntimeError error = allocator.allocateError(e.getMessage());
                 returnError(error);
-                if (current.getExceptionJumpIndex() >= 0) {
-                  setInstrIndex(current.getExceptionJumpIndex());
+                if (exceptionJumps[current] >= 0) {
+                  setInstrIndex(exceptionJumps[current]);
                 }
                 else {
                   returnError(error); 
@@ -201,12 +266,14 @@ public class FunctionFrame extends StackFrame {
            */
           if (left instanceof RuntimeString || right instanceof RuntimeString) {
             pushOperand(allocator.allocateString(left.toString() + right.toString()));
+            codeObject.quicken(current, OpCode.ADD_STR);
             break;
           }
           
           final RuntimeInstance result = RuntimeUtils.numAdd(left, right, allocator);
           if (result != null) {
             pushOperand(result);
+            quicken(current, left, right, OpCode.ADD_INT_INT, OpCode.ADD_FLOAT_FLOAT);
             break;
           }
 
@@ -219,6 +286,7 @@ public class FunctionFrame extends StackFrame {
           final RuntimeInstance result = RuntimeUtils.numMinus(left, right, allocator);
           if (result != null) {
             pushOperand(result);
+            quicken(current, left, right, OpCode.SUB_INT_INT, OpCode.SUB_FLOAT_FLOAT);
             break;
           }
 
@@ -231,6 +299,7 @@ public class FunctionFrame extends StackFrame {
           final RuntimeInstance result = RuntimeUtils.numMult(left, right, allocator);
           if (result != null) {
             pushOperand(result);
+            quicken(current, left, right, OpCode.MUL_INT_INT, OpCode.MUL_FLOAT_FLOAT);
             break;
           }
 
@@ -278,53 +347,54 @@ public class FunctionFrame extends StackFrame {
         }
           
         //Comparative operators
-        case LESS: {
+        case LESS: 
+        case GREAT: 
+        case LESSE: 
+        case GREATE: {
           RuntimeInstance right = popOperand();
           RuntimeInstance left = popOperand();
           
-          final RuntimeBool result = RuntimeUtils.numLess(left, right, false, allocator);
-          if (result != null) {
-            pushOperand(result);
-            break;
+          final RuntimeBool result;
+          final OpCode intOp;
+          switch (op) {
+            case LESS:
+              result = RuntimeUtils.numLess(left, right, false, allocator);
+              intOp = OpCode.LESS_INT_INT;
+              break;
+            case GREAT:
+              result = RuntimeUtils.numGreat(left, right, false, allocator);
+              intOp = OpCode.GREAT_INT_INT;
+              break;
+            case LESSE:
+              result = RuntimeUtils.numLess(left, right, true, allocator);
+              intOp = OpCode.LESSE_INT_INT;
+              break;
+            default:
+              result = RuntimeUtils.numGreat(left, right, true, allocator);
+              intOp = OpCode.GREATE_INT_INT;
+              break;
           }
-
-          //If the result is still null after using the numXXX() methods, then pass it down!
-        }
-        case GREAT: {
-          RuntimeInstance right = popOperand();
-          RuntimeInstance left = popOperand();
           
-          final RuntimeBool result = RuntimeUtils.numGreat(left, right, false, allocator);
           if (result != null) {
             pushOperand(result);
+            quicken(current, left, right, intOp, null);
             break;
           }
 
-          //If the result is still null after using the numXXX() methods, then pass it down!
-        }
-        case LESSE: {
-          RuntimeInstance right = popOperand();
-          RuntimeInstance left = popOperand();
-          
-          final RuntimeBool result = RuntimeUtils.numLess(left, right, true, allocator);
-          if (result != null) {
-            pushOperand(result);
-            break;
+          /*
+           * Not numerical operands. Call the left operand's operator 
+           * hook (such as $less) - rather than falling through to the next operator
+           */
+          final StackFrame hookFrame = callOperatorHook(op, left, right, allocator);
+          if (hookFrame != null) {
+            incrmntInstrIndex();
+            return hookFrame;
           }
-
-          //If the result is still null after using the numXXX() methods, then pass it down!
-        }
-        case GREATE: {
-          RuntimeInstance right = popOperand();
-          RuntimeInstance left = popOperand();
-          
-          final RuntimeBool result = RuntimeUtils.numGreat(left, right, true, allocator);
-          if (result != null) {
-            pushOperand(result);
+          else if (exceptionJumps[current] >= 0) {
+            setInstrIndex(exceptionJumps[current]);
             break;
           }
-
-          //If the result is still null after using the numXXX() methods, then pass it down!
+          return null;
         }         
         case MOD: {
           RuntimeInstance right = popOperand();
@@ -338,7 +408,7 @@ public class FunctionFrame extends StackFrame {
 
           //If the result is still null after using the numXXX() methods, then pass it down!
           
-          LOG.trace(" For: "+instr+" => Not numerical operands. Will call overloaded operator implementation!");
+          LOG.trace(" For: "+op+" => Not numerical operands. Will call overloaded operator implementation!");
 
           //System.out.println(" --- arith instr! "+op+" | "+right.getClass()+" | "+left.getClass());
                   
@@ -355,14 +425,14 @@ public class FunctionFrame extends StackFrame {
                 StackFrame newFrame = makeFrame(actualCallable, args, allocator);
                 incrmntInstrIndex();     
                 
-                //System.out.println("---- returning new frame!!! "+getCurrInstr().getInstr()+" | "+instrIndex);
+                //System.out.println("---- returning new frame!!! "+instrIndex);
                 return newFrame;
               } catch (CallSiteException e) {
                 //System.out.println("--- caught error!!! "+e.getClass()+" | "+e.getMessage());
                 RuntimeError error = allocator.allocateError(e.getMessage());
                 returnError(error);
-                if (current.getExceptionJumpIndex() >= 0) {
-                  setInstrIndex(current.getExceptionJumpIndex());
+                if (exceptionJumps[current] >= 0) {
+                  setInstrIndex(exceptionJumps[current]);
                 }
                 else {
                   returnError(error); 
@@ -373,8 +443,8 @@ public class FunctionFrame extends StackFrame {
             else {
               RuntimeError error = allocator.allocateError(coupling.getOpCode().name().toLowerCase()+" isn't a callable");
               returnError(error);
-              if (current.getExceptionJumpIndex() >= 0) {
-                setInstrIndex(current.getExceptionJumpIndex());
+              if (exceptionJumps[current] >= 0) {
+                setInstrIndex(exceptionJumps[current]);
               }
               else {
                 returnError(error); 
@@ -388,12 +458,12 @@ public class FunctionFrame extends StackFrame {
                                                          coupling.getOpCode().name().toLowerCase()+
                                                          " on "+left.getClass());
             
-            //System.out.println("---- err: "+instr+" | "+error.getAttr("msg")+" | "+(current.getExceptionJumpIndex() >= 0)+" | "+left);
+            //System.out.println("---- err: "+instr+" | "+error.getAttr("msg")+" | "+(exceptionJumps[current] >= 0)+" | "+left);
             //System.out.println(instr.getStart());
 
             returnError(error);
-            if (current.getExceptionJumpIndex() >= 0) {
-              setInstrIndex(current.getExceptionJumpIndex());
+            if (exceptionJumps[current] >= 0) {
+              setInstrIndex(exceptionJumps[current]);
             }
             else {
               returnError(error); 
@@ -445,8 +515,8 @@ public class FunctionFrame extends StackFrame {
               } catch (CallSiteException e) {
                 RuntimeError error = allocator.allocateError(e.getMessage());
                 returnError(error);
-                if (current.getExceptionJumpIndex() >= 0) {
-                  setInstrIndex(current.getExceptionJumpIndex());
+                if (exceptionJumps[current] >= 0) {
+                  setInstrIndex(exceptionJumps[current]);
                 }
                 else {
                   returnError(error); 
@@ -457,8 +527,8 @@ public class FunctionFrame extends StackFrame {
             else {
               RuntimeError error = allocator.allocateError("Object isn't callable!");
               returnError(error);
-              if (current.getExceptionJumpIndex() >= 0) {
-                setInstrIndex(current.getExceptionJumpIndex());
+              if (exceptionJumps[current] >= 0) {
+                setInstrIndex(exceptionJumps[current]);
               }
               else {
                 returnError(error); 
@@ -470,8 +540,8 @@ public class FunctionFrame extends StackFrame {
             //unsupported operation          
             RuntimeError error = allocator.allocateError("Unsupported operation for "+coupling.getOpCode().name().toLowerCase());
             returnError(error);
-            if (current.getExceptionJumpIndex() >= 0) {
-              setInstrIndex(current.getExceptionJumpIndex());
+            if (exceptionJumps[current] >= 0) {
+              setInstrIndex(exceptionJumps[current]);
             }
             else {
               returnError(error); 
@@ -502,75 +572,60 @@ public class FunctionFrame extends StackFrame {
           final RuntimeInstance callable = popOperand();
           final ArgVector args = (ArgVector) popOperand();
           
-          if (callable instanceof Callable) {
-            Callable actualCallable = (Callable) callable;
-            
-            try {
-              final RuntimeInstance result = RuntimeUtils.fastCall(actualCallable, args, thread);
-              //System.out.println(" =================== CALL =================== ");
-              if (result != null) {
-                pushOperand(result);
-              }
-              else {
-                //System.out.println(" ===>pre args: "+args.getPositionals().size());
-                StackFrame newFrame = makeFrame(actualCallable, args, allocator);
-                incrmntInstrIndex();
-                return newFrame;
-              }
-            } catch (CallSiteException | InvocationException e) {
-              LOG.debug(e);
-              RuntimeError error = allocator.allocateError(e.getMessage());
-              returnError(error);
-              if (current.getExceptionJumpIndex() >= 0) {
-                setInstrIndex(current.getExceptionJumpIndex());
-              }
-              else {
-                returnError(error);
-                return null;
-              }
-            }          
-          }
-          else if(callable instanceof RuntimeDataRecord) {
-            final RuntimeDataRecord dataRecord = (RuntimeDataRecord) callable;
-            LOG.info(" ===> call to data record!!!");
-
-            /*
-            *TODO: Should this cast be more explicitly checked? Do we want to do a sanity check 
-            *      if a "constr" attr exists? and if it does, whether it's a CodeObject?
-            */
-            final RuntimeCodeObject constructor = (RuntimeCodeObject) dataRecord.getAttr(TokenType.CONSTR.name().toLowerCase());
-            final RuntimeInstance selfObject = allocator.allocateEmptyObject();
-            final RuntimeCallable actualCallable = allocator.allocateCallable(getHostModule(), selfObject, constructor);
-
-            try {
-              final RuntimeInstance result = RuntimeUtils.fastCall(actualCallable, args, thread);
-              if (result != null) {
-                pushOperand(result);
-              }
-              else {
-                StackFrame newFrame = makeFrame(actualCallable, args, allocator);
-                passOver = selfObject;
-                incrmntInstrIndex();
-                return newFrame;
-              }
-            } catch (CallSiteException | InvocationException e) {
-              RuntimeError error = allocator.allocateError(e.getMessage());
+          try {
+            final StackFrame newFrame = call(callable, args, thread);
+            if (newFrame != null) {
+              incrmntInstrIndex();
+              return newFrame;
+            }
+          } catch (CallSiteException | InvocationException e) {
+            LOG.debug(e);
+            RuntimeError error = allocator.allocateError(e.getMessage());
+            returnError(error);
+            if (exceptionJumps[current] >= 0) {
+              setInstrIndex(exceptionJumps[current]);
+            }
+            else {
               returnError(error);
-              if (current.getExceptionJumpIndex() >= 0) {
-                setInstrIndex(current.getExceptionJumpIndex());
-              }
-              else {
-                returnError(error);
-                return null;
-              }
+              return null;
             }
           }
-          else {
-            //unsupported operation
-            RuntimeError error = allocator.allocateError("Target isn't callable "+callable);
+          
+          break;
+        }
+        case CALL0:
+        case CALL1:
+        case CALL2:
+        case CALL3:
+        case CALL4:
+        case CALLK: {
+          /*
+           * Arguments are on the operand stack, below the callable.
+           * 
+           * Calls to functions taking exactly the given positional arguments move 
+           * the arguments straight into the callee's local variables. 
+           * Otherwise, an ArgVector is made and the call is done as with CALL.
+           */
+          final String [] layout = op == OpCode.CALLK ? 
+                                     codeObject.getKeywordLayout(current, constants) : 
+                                     null;
+          final int argCount = layout != null ? layout.length : OpCode.arityOf(op);
+          final RuntimeInstance callable = popOperand();
+          
+          try {
+            final StackFrame newFrame = layout == null && takesExactly(callable, argCount) ? 
+                                          directCall((RuntimeCallable) callable, argCount, thread) : 
+                                          call(callable, popArgs(layout, argCount), thread);
+            if (newFrame != null) {
+              incrmntInstrIndex();
+              return newFrame;
+            }
+          } catch (CallSiteException | InvocationException e) {
+            LOG.debug(e);
+            RuntimeError error = allocator.allocateError(e.getMessage());
             returnError(error);
-            if (current.getExceptionJumpIndex() >= 0) {
-              setInstrIndex(current.getExceptionJumpIndex());
+            if (exceptionJumps[current] >= 0) {
+              setInstrIndex(exceptionJumps[current]);
             }
             else {
               returnError(error);
@@ -585,14 +640,25 @@ public class FunctionFrame extends StackFrame {
         * Jump opcodes
         */
         case JUMP: {
-          IndexedJumpInstr jumpInstr = (IndexedJumpInstr) instr;
-          setInstrIndex(jumpInstr.getJumpIndex());
+          if (arg < current) {
+            //Backward jumps are loop iterations
+            if (codeObject.heat()) {
+              jitCompile();
+            }
+            
+            final boolean exhausted = thread.consumeBudget(current - checkpoint + 1);
+            checkpoint = arg;
+            if (exhausted) {
+              //Out of time. Yield, resuming at the loop's start
+              setInstrIndex(arg);
+              return this;
+            }
+          }
+          setInstrIndex(arg);
           decrmntInstrIndex();
           break;
         }
         case JUMPT: {
-          IndexedJumpInstr jumpInstr = (IndexedJumpInstr) instr;
-
           RuntimeInstance boolValue = popOperand();
           
           /*
@@ -604,14 +670,12 @@ public class FunctionFrame extends StackFrame {
           * Should we do the same?
           */
           if ((boolValue instanceof RuntimeBool) && ((RuntimeBool) boolValue).getValue()) {
-            setInstrIndex(jumpInstr.getJumpIndex());
+            setInstrIndex(arg);
             decrmntInstrIndex();
           }
           break;
         }
         case JUMPF: {
-          IndexedJumpInstr jumpInstr = (IndexedJumpInstr) instr;
-
           RuntimeInstance boolValue = popOperand();
           
           /*
@@ -623,7 +687,7 @@ public class FunctionFrame extends StackFrame {
           * Should we do the same?
           */
           if ((boolValue instanceof RuntimeBool) && !((RuntimeBool) boolValue).getValue()) {
-            setInstrIndex(jumpInstr.getJumpIndex());
+            setInstrIndex(arg);
             decrmntInstrIndex();
           }
           break;
@@ -648,7 +712,7 @@ public class FunctionFrame extends StackFrame {
           }
           */
           //System.out.println(" ========================== RETURN ========================");
-          returnValue(popOperand());
+          returnTopOperand();
           return null;
         }
         case RETE: {
@@ -686,26 +750,34 @@ public class FunctionFrame extends StackFrame {
             }
           }
           
-          if (current.getExceptionJumpIndex() >= 0) {
+          if (exceptionJumps[current] >= 0) {
             returnError(error);
-            setInstrIndex(current.getExceptionJumpIndex());
+            setInstrIndex(exceptionJumps[current]);
           }
           else {
             returnError(error);
             return null;
           }
-          //break execLoop;
+          break;
         }
         case POPERR: {
+          //Anything left on the operand stack by the failed instructions is discarded
+          clearOpStack();
           pushOperand(getError().getErrorObject());
-          returnError(null);
+
+          //The error has been handled
+          error = null;
+          break;
         }     
+        case POP: {
+          popOperand();
+          break;
+        }
         case MAKEARGV : {
           pushOperand(new ArgVector());
           break;
         }
         case ARG: {
-          ArgInstr argInstr = (ArgInstr) instr;          
           //Pop the actual argument
           final RuntimeInstance argValue = popOperand();
           
@@ -713,8 +785,8 @@ public class FunctionFrame extends StackFrame {
 
           //System.out.println(" ===> arg instr!");
           
-          if (argInstr.getArgument() >= 0) {
-            String argName = ((RuntimeString) getHostModule().getConstantMap().get(argInstr.getArgument())).getValue();
+          if (arg >= 0) {
+            String argName = ((RuntimeString) constants[arg]).getValue();
             argVector.setKeywordArg(argName, argValue);
 
             //System.out.println(" ====> Setting arg keyword "+argName+" | value = "+argValue);
@@ -732,41 +804,45 @@ public class FunctionFrame extends StackFrame {
         * Load/store instructions 
         */
         case LOADC: {
-          ArgInstr loadcInstr = (ArgInstr) instr;
-          pushOperand(getHostModule().getConstantMap().get(loadcInstr.getArgument()));
+          pushOperand(constants[arg]);
           break;
         }
         case LOAD: {          
-          LoadCellInstr loadInstr = (LoadCellInstr) instr;
-          
-          //System.out.println(" ------- LOAD: LOCAL VARS: "+getLocalVars().length+", "+loadInstr.getIndex()+" | AT: "+hashCode());
-          pushOperand(getLocalVar(loadInstr.getIndex()));
+          //System.out.println(" ------- LOAD: LOCAL VARS: "+getLocalVars().length+", "+arg+" | AT: "+hashCode());
+          loadLocalVar(arg);
           break;
         }
         case STORE: {
-          StoreCellInstr storeInstr = (StoreCellInstr) instr;
-          RuntimeInstance value = popOperand();
-          storeLocalVar(storeInstr.getIndex(), value);
+          storeTopToLocalVar(arg);
           //System.out.println(" ==== STORE: "+instr+" | "+instr.getStart()+" | AT: "+hashCode());
           break;
         }
         case LOADATTR: {
-          LoadCellInstr loadInstr = (LoadCellInstr) instr;
-          String attrName = ((RuntimeString) getHostModule().getConstantMap().get(loadInstr.getIndex())).getValue();
           RuntimeInstance object = popOperand();
           
+          //Check the inline cache first. On a hit, there's no need for the attribute name
+          RuntimeInstance value = object.getCachedAttr(attrCaches[current]);
+          if (value != null) {
+            pushOperand(value);
+            break;
+          }
+          
+          String attrName = ((RuntimeString) constants[arg]).getValue();
+          
           //System.out.println("====> object attr: "+object.attrs());
 
           if(object.hasAttr(attrName)) {
+            final Shape shape = object.getShape();
             pushOperand(object.getAttr(attrName));
+            attrCaches[current].record(shape, shape.getSlot(attrName));
           }
           else {
             //System.out.println("---------> ATTR ERROR!!! "+"'"+attrName+"' is unfound on object. "+object.getAttributes().keySet()+" | "+object.getClass()+" | "+instr.getStart());
             
             RuntimeError error = allocator.allocateError("'"+attrName+"' is unfound on object.");
             returnError(error);
-            if (current.getExceptionJumpIndex() >= 0) {
-              setInstrIndex(current.getExceptionJumpIndex());
+            if (exceptionJumps[current] >= 0) {
+              setInstrIndex(exceptionJumps[current]);
             }
             else {
               returnError(error); 
@@ -778,21 +854,37 @@ public class FunctionFrame extends StackFrame {
           break;
         }
         case STOREATTR: {
-          StoreCellInstr storeInstr = (StoreCellInstr) instr;
-          String attrName = ((RuntimeString) getHostModule().getConstantMap().get(storeInstr.getIndex())).getValue();
           RuntimeInstance object = popOperand();
           RuntimeInstance value = popOperand();
+          
+          //Check the inline cache first. On a hit, there's no need for the attribute name
+          if (object.setCachedAttr(attrCaches[current], value)) {
+            pushOperand(object);
+            break;
+          }
+          
+          String attrName = ((RuntimeString) constants[arg]).getValue();
 
           //System.out.println(" ===> STORING ATTR: "+attrName+" | "+object.attrModifiers(attrName));
                   
           try {
             object.setAttribute(attrName, value);
             pushOperand(object);
+            
+            /*
+             * Only cache Shapes where the attribute has no modifiers,
+             * so that stores through the cache need no modifier checks.
+             */
+            final Shape shape = object.getShape();
+            final int slot = shape.getSlot(attrName);
+            if (slot >= 0 && shape.getModifiers(slot) == 0) {
+              attrCaches[current].record(shape, slot);
+            }
           } catch (OperationException e) {
             RuntimeError error = allocator.allocateError(e.getMessage());
             returnError(error);
-            if (current.getExceptionJumpIndex() >= 0) {
-              setInstrIndex(current.getExceptionJumpIndex());
+            if (exceptionJumps[current] >= 0) {
+              setInstrIndex(exceptionJumps[current]);
             }
             else {
               returnError(error); 
@@ -807,32 +899,29 @@ public class FunctionFrame extends StackFrame {
           break;
         }
         case LOAD_CL: {
-          LoadCellInstr loadInstr = (LoadCellInstr) instr;
-          pushOperand(getCapture(loadInstr.getIndex()));
+          pushOperand(getCapture(arg));
           break;
         }
         case STORE_CL: {
-          StoreCellInstr storeInstr = (StoreCellInstr) instr;
           RuntimeInstance value = popOperand();
-          setCapture(storeInstr.getIndex(), value);
+          setCapture(arg, value);
           break;
         }
         case LOADMV: {
-          LoadCellInstr loadInstr = (LoadCellInstr) instr;
-          String attrName = ((RuntimeString) getHostModule().getConstantMap().get(loadInstr.getIndex())).getValue();
-          
-          RuntimeInstance moduleObject = getHostModule().getModuleObject();
+          //The operand is the module variable's slot
+          final RuntimeInstance value = moduleVariables.get(arg);
           
-          if(moduleObject.hasAttr(attrName)) {
-            pushOperand(moduleObject.getAttr(attrName));
+          if(value != null) {
+            pushOperand(value);
           }
           else {
             //System.out.println("---------> ATTR ERROR!!! "+"'"+attrName+"' is unfound on object. "+object.getAttributes().keySet());
             
+            String attrName = ((RuntimeString) constants[arg]).getValue();
             RuntimeError error = allocator.allocateError("'"+attrName+"' is unfound on module.");
             returnError(error);
-            if (current.getExceptionJumpIndex() >= 0) {
-              setInstrIndex(current.getExceptionJumpIndex());
+            if (exceptionJumps[current] >= 0) {
+              setInstrIndex(exceptionJumps[current]);
             }
             else {
               returnError(error); 
@@ -844,12 +933,11 @@ public class FunctionFrame extends StackFrame {
           break;
         }
         case STOREMV: {
-          StoreCellInstr storeInstr = (StoreCellInstr) instr;      
           RuntimeInstance newValue = popOperand();
                     
-          String attrName = ((RuntimeString) getHostModule().getConstantMap().get(storeInstr.getIndex())).getValue();
+          String attrName = ((RuntimeString) constants[arg]).getValue();
 
-          //System.out.println(">>>> STOREMV: "+attrName+" | "+storeInstr.getIndex());
+          //System.out.println(">>>> STOREMV: "+attrName+" | "+arg);
 
           
           RuntimeInstance moduleObject = getHostModule().getModuleObject();
@@ -859,8 +947,8 @@ public class FunctionFrame extends StackFrame {
           } catch (OperationException e) {
             RuntimeError error = allocator.allocateError(e.getMessage());
             returnError(error);
-            if (current.getExceptionJumpIndex() >= 0) {
-              setInstrIndex(current.getExceptionJumpIndex());
+            if (exceptionJumps[current] >= 0) {
+              setInstrIndex(exceptionJumps[current]);
             }
             else {
               returnError(error); 
@@ -870,6 +958,43 @@ public class FunctionFrame extends StackFrame {
           break;
         }
         case LOADIN: {
+          /*
+           * Arrays and strings indexed by an integer are handled
+           * here directly, rather than through a call to $getAt
+           */
+          final RuntimeInstance indexed = operandStack[operandTop - 2];
+          if ((indexed instanceof RuntimeArray || indexed instanceof RuntimeString) && isIntOperand(0)) {
+            final long index = popInt();
+            popOperand();
+            
+            /*
+             * Packed arrays push their elements unboxed (see RuntimeArray.loadElement())
+             */
+            final boolean loaded;
+            if (indexed instanceof RuntimeArray) {
+              loaded = ((RuntimeArray) indexed).loadElement(index, this);
+            }
+            else {
+              final RuntimeInstance value = charAt((RuntimeString) indexed, index);
+              if (loaded = value != null) {
+                pushOperand(value);
+              }
+            }
+            
+            if (!loaded) {
+              RuntimeError error = allocator.allocateError("Index "+index+" is out of bounds");
+              returnError(error);
+              if (exceptionJumps[current] >= 0) {
+                setInstrIndex(exceptionJumps[current]);
+              }
+              else {
+                returnError(error); 
+                return null;
+              }
+            }
+            break;
+          }
+          
           RuntimeInstance index = popOperand();
           RuntimeInstance target = popOperand();
                     
@@ -887,8 +1012,8 @@ public class FunctionFrame extends StackFrame {
               } catch (CallSiteException e) {
                 RuntimeError error = allocator.allocateError(e.getMessage());
                 returnError(error);
-                if (current.getExceptionJumpIndex() >= 0) {
-                  setInstrIndex(current.getExceptionJumpIndex());
+                if (exceptionJumps[current] >= 0) {
+                  setInstrIndex(exceptionJumps[current]);
                 }
                 else {
                   returnError(error); 
@@ -899,8 +1024,8 @@ public class FunctionFrame extends StackFrame {
             else {
               RuntimeError error = allocator.allocateError("The target isn't indexible");
               returnError(error);
-              if (current.getExceptionJumpIndex() >= 0) {
-                setInstrIndex(current.getExceptionJumpIndex());
+              if (exceptionJumps[current] >= 0) {
+                setInstrIndex(exceptionJumps[current]);
               }
               else {
                 returnError(error); 
@@ -911,8 +1036,8 @@ public class FunctionFrame extends StackFrame {
           else {
             RuntimeError error = allocator.allocateError("The target isn't indexible");
             returnError(error);
-            if (current.getExceptionJumpIndex() >= 0) {
-              setInstrIndex(current.getExceptionJumpIndex());
+            if (exceptionJumps[current] >= 0) {
+              setInstrIndex(exceptionJumps[current]);
             }
             else {
               returnError(error); 
@@ -923,10 +1048,34 @@ public class FunctionFrame extends StackFrame {
           break;
         }
         case STOREIN: {
-          RuntimeInstance value = popOperand();
+          //Like LOADIN, arrays indexed by an integer are handled here directly
+          final RuntimeInstance indexed = operandStack[operandTop - 2];
+          if (indexed instanceof RuntimeArray && isIntOperand(0)) {
+            final long intIndex = popInt();
+            popOperand();
+            
+            //The value to store is now at the top, and is popped by storeElement()
+            if (((RuntimeArray) indexed).storeElement(intIndex, this, allocator)) {
+              //As $setAt would've returned
+              pushOperand(RuntimeNull.NULL);
+            }
+            else {
+              RuntimeError error = allocator.allocateError("Index "+intIndex+" is out of bounds");
+              returnError(error);
+              if (exceptionJumps[current] >= 0) {
+                setInstrIndex(exceptionJumps[current]);
+              }
+              else {
+                returnError(error); 
+                return null;
+              }
+            }
+            break;
+          }
+          
           RuntimeInstance index = popOperand();
           RuntimeInstance target = popOperand();
-
+          RuntimeInstance value = popOperand();
           
           if (target.hasAttr(RuntimeArray.STORE_INDEX_ATTR)) {
             RuntimeInstance loadIndexFunc = target.getAttr(RuntimeArray.STORE_INDEX_ATTR);
@@ -942,8 +1091,8 @@ public class FunctionFrame extends StackFrame {
               } catch (CallSiteException e) {
                 RuntimeError error = allocator.allocateError(e.getMessage());
                 returnError(error);
-                if (current.getExceptionJumpIndex() >= 0) {
-                  setInstrIndex(current.getExceptionJumpIndex());
+                if (exceptionJumps[current] >= 0) {
+                  setInstrIndex(exceptionJumps[current]);
                 }
                 else {
                   returnError(error);
@@ -954,8 +1103,8 @@ public class FunctionFrame extends StackFrame {
             else {
               RuntimeError error = allocator.allocateError("The target isn't indexible");
               returnError(error);
-              if (current.getExceptionJumpIndex() >= 0) {
-                setInstrIndex(current.getExceptionJumpIndex());
+              if (exceptionJumps[current] >= 0) {
+                setInstrIndex(exceptionJumps[current]);
               }
               else {
                 returnError(error); 
@@ -966,8 +1115,8 @@ public class FunctionFrame extends StackFrame {
           else {
             RuntimeError error = allocator.allocateError("The target isn't indexible");
             returnError(error);
-            if (current.getExceptionJumpIndex() >= 0) {
-              setInstrIndex(current.getExceptionJumpIndex());
+            if (exceptionJumps[current] >= 0) {
+              setInstrIndex(exceptionJumps[current]);
             }
             else {
               returnError(error); 
@@ -978,14 +1127,12 @@ public class FunctionFrame extends StackFrame {
           break;
         }
         case LOADMOD: {
-          LoadCellInstr loadInstr = (LoadCellInstr) instr;
-          
-          if(loadInstr.getIndex() < 0) {
+          if(arg < 0) {
             //Load the current module
             pushOperand(getHostModule().getModuleObject());
           }
           else {
-            String moduleName = ((RuntimeString) getHostModule().getConstantMap().get(loadInstr.getIndex())).getValue();
+            String moduleName = ((RuntimeString) constants[arg]).getValue();
             
             
             RuntimeModule module = thread.getFinder().load(moduleName);
@@ -997,8 +1144,8 @@ public class FunctionFrame extends StackFrame {
                   StackFrame newFrame = makeFrame(moduleCallable, new ArgVector(), allocator);               
                   incrmntInstrIndex();
                   
+                  //The module's code returns the module object once it's done
                   module.setAsLoaded(true);
-                  pushOperand(module.getModuleObject());
                   
                   //System.out.println("----- return loaded module code "+" | "+hasOperand()+" | "+hashCode());
                   
@@ -1006,8 +1153,8 @@ public class FunctionFrame extends StackFrame {
                 } catch (CallSiteException e) {
                   RuntimeError error = allocator.allocateError(e.getMessage());
                   returnError(error);
-                  if (current.getExceptionJumpIndex() >= 0) {
-                    setInstrIndex(current.getExceptionJumpIndex());
+                  if (exceptionJumps[current] >= 0) {
+                    setInstrIndex(exceptionJumps[current]);
                   }
                   else {
                     returnError(error); 
@@ -1023,8 +1170,8 @@ public class FunctionFrame extends StackFrame {
               //Unfound module. Throw an error
               RuntimeError error = allocator.allocateError("Couldn't find the module '"+moduleName+"'");
               returnError(error);
-              if (current.getExceptionJumpIndex() >= 0) {
-                setInstrIndex(current.getExceptionJumpIndex());
+              if (exceptionJumps[current] >= 0) {
+                setInstrIndex(exceptionJumps[current]);
               }
               else {
                 returnError(error); 
@@ -1042,8 +1189,7 @@ public class FunctionFrame extends StackFrame {
         * (in the future, these may be extended to object attributes in general)
         */
         case EXPORTMV: {
-          ArgInstr exportInstr = (ArgInstr) instr;
-          String varName = ((RuntimeString) getHostModule().getConstantMap().get(exportInstr.getArgument())).getValue();
+          String varName = ((RuntimeString) constants[arg]).getValue();
 
           final RuntimeInstance moduleObject = getHostModule().getModuleObject();
 
@@ -1060,8 +1206,7 @@ public class FunctionFrame extends StackFrame {
           break;
         }
         case CONSTMV: {
-          ArgInstr exportInstr = (ArgInstr) instr;
-          String varName = ((RuntimeString) getHostModule().getConstantMap().get(exportInstr.getArgument())).getValue();
+          String varName = ((RuntimeString) constants[arg]).getValue();
 
           //System.out.println("===> making module variable "+varName+" constant!");
 
@@ -1097,8 +1242,8 @@ public class FunctionFrame extends StackFrame {
           else {
             RuntimeError error = allocator.allocateError("Not a code object");
             returnError(error);
-            if (current.getExceptionJumpIndex() >= 0) {
-              setInstrIndex(current.getExceptionJumpIndex());
+            if (exceptionJumps[current] >= 0) {
+              setInstrIndex(exceptionJumps[current]);
             }
             else {
               returnError(error); 
@@ -1124,20 +1269,18 @@ public class FunctionFrame extends StackFrame {
           
           //We need to add array elements in reverse order from ArgVector
           //As ArgVector adds positional arguments by adding them at the front.
-          for(int i = args.getPositionals().size() - 1; i >= 0; i--) {
-            array.addValue(args.getPositional(i));
+          for(int i = args.getPositionalCount() - 1; i >= 0; i--) {
+            array.addValue(args.positionalAt(i), allocator);
           }
           
           pushOperand(array);
           break;
         }
         case ALLOCO: {
-          final ArgInstr alloco = (ArgInstr) instr;
-
           ArgVector args = (ArgVector) popOperand();
           
           RuntimeInstance object = allocator.allocateEmptyObject((ini, self) -> {
-            for(Entry<String, RuntimeInstance> pair : args.getAttributes().entrySet()) { 
+            for(Entry<String, RuntimeInstance> pair : args.getKeywordArgs().entrySet()) { 
               if (pair.getValue() instanceof RuntimeCallable) {
                 RuntimeCallable callable = (RuntimeCallable) pair.getValue();
                 ini.init(pair.getKey(), callable.rebind(self, allocator));
@@ -1148,7 +1291,7 @@ public class FunctionFrame extends StackFrame {
             }
           });
 
-          if (alloco.getArgument() != 0) {
+          if (arg != 0) {
             object.seal();
           }
 
@@ -1164,11 +1307,9 @@ public class FunctionFrame extends StackFrame {
           break;
         }
         case MAKECONST: {
-          final ArgInstr hasInstr = (ArgInstr) instr;
-
           final RuntimeInstance attrValue = popOperand();
           final RuntimeInstance targetObj = popOperand();
-          final String attrName = ((RuntimeString) getHostModule().getConstantMap().get(hasInstr.getArgument())).getValue();
+          final String attrName = ((RuntimeString) constants[arg]).getValue();
 
           try {
             targetObj.setAttribute(attrName, attrValue);
@@ -1177,8 +1318,8 @@ public class FunctionFrame extends StackFrame {
           } catch (OperationException e) {
             RuntimeError error = allocator.allocateError("Cannot make '"+attrName+"' constant: "+e.getMessage());
             returnError(error);
-            if (current.getExceptionJumpIndex() >= 0) {
-              setInstrIndex(current.getExceptionJumpIndex());
+            if (exceptionJumps[current] >= 0) {
+              setInstrIndex(exceptionJumps[current]);
             }
             else {
               returnError(error); 
@@ -1194,21 +1335,186 @@ public class FunctionFrame extends StackFrame {
           break;
         }
         case HAS_KARG: {
-          final ArgInstr hasInstr = (ArgInstr) instr;
-          final String attrName = ((RuntimeString) getHostModule().getConstantMap().get(hasInstr.getArgument())).getValue();
-          final RuntimeBool result = allocator.allocateBool(initialArgs.hasAttr(attrName));
+          final String attrName = ((RuntimeString) constants[arg]).getValue();
+          final RuntimeBool result = allocator.allocateBool(initialArgs != null && initialArgs.hasKeywordArg(attrName));
           //System.out.println(" ===> has k_arg? "+attrName+" | "+initialArgs.attrs()+" | "+result);
           pushOperand(result);
           break;
         }
+        
+        /*
+         * Quickened instructions. 
+         * 
+         * If an instruction's guard fails, it's deoptimized and
+         * then re-ran (without incrementing the instruction index) in its generic form.
+         */
+        case ADD_INT_INT: {
+          if (intOperands()) {
+            final long right = popInt();
+            final long left = popInt();
+            pushInt(left + right);
+            break;
+          }
+          codeObject.deoptimize(current, OpCode.ADD);
+          continue;
+        }
+        case ADD_FLOAT_FLOAT: {
+          if (floatOperands()) {
+            final double right = popFloat();
+            final double left = popFloat();
+            pushFloat(left + right);
+            break;
+          }
+          codeObject.deoptimize(current, OpCode.ADD);
+          continue;
+        }
+        case ADD_STR: {
+          if (operandStack[operandTop - 1] instanceof RuntimeString || 
+              operandStack[operandTop - 2] instanceof RuntimeString) {
+            final RuntimeInstance right = popOperand();
+            final RuntimeInstance left = popOperand();
+            pushOperand(allocator.allocateString(left.toString() + right.toString()));
+            break;
+          }
+          codeObject.deoptimize(current, OpCode.ADD);
+          continue;
+        }
+        case SUB_INT_INT: {
+          if (intOperands()) {
+            final long right = popInt();
+            final long left = popInt();
+            pushInt(left - right);
+            break;
+          }
+          codeObject.deoptimize(current, OpCode.SUB);
+          continue;
+        }
+        case SUB_FLOAT_FLOAT: {
+          if (floatOperands()) {
+            final double right = popFloat();
+            final double left = popFloat();
+            pushFloat(left - right);
+            break;
+          }
+          codeObject.deoptimize(current, OpCode.SUB);
+          continue;
+        }
+        case MUL_INT_INT: {
+          if (intOperands()) {
+            final long right = popInt();
+            final long left = popInt();
+            pushInt(left * right);
+            break;
+          }
+          codeObject.deoptimize(current, OpCode.MUL);
+          continue;
+        }
+        case MUL_FLOAT_FLOAT: {
+          if (floatOperands()) {
+            final double right = popFloat();
+            final double left = popFloat();
+            pushFloat(left * right);
+            break;
+          }
+          codeObject.deoptimize(current, OpCode.MUL);
+          continue;
+        }
+        case LESS_INT_INT: {
+          if (intOperands()) {
+            final long right = popInt();
+            final long left = popInt();
+            pushOperand(allocator.allocateBool(left < right));
+            break;
+          }
+          codeObject.deoptimize(current, OpCode.LESS);
+          continue;
+        }
+        case GREAT_INT_INT: {
+          if (intOperands()) {
+            final long right = popInt();
+            final long left = popInt();
+            pushOperand(allocator.allocateBool(left > right));
+            break;
+          }
+          codeObject.deoptimize(current, OpCode.GREAT);
+          continue;
+        }
+        case LESSE_INT_INT: {
+          if (intOperands()) {
+            final long right = popInt();
+            final long left = popInt();
+            pushOperand(allocator.allocateBool(left <= right));
+            break;
+          }
+          codeObject.deoptimize(current, OpCode.LESSE);
+          continue;
+        }
+        case GREATE_INT_INT: {
+          if (intOperands()) {
+            final long right = popInt();
+            final long left = popInt();
+            pushOperand(allocator.allocateBool(left >= right));
+            break;
+          }
+          codeObject.deoptimize(current, OpCode.GREATE);
+          continue;
+        }
+        
+        /*
+         * Superinstructions. 
+         * 
+         * The rest of the instruction sequence follows the superinstruction.
+         * If the operands aren't integers, the superinstruction executes as a LOAD,
+         * and the rest of the sequence is executed normally.
+         */
+        case LOAD_LOADC_CMP_JUMPF: {
+          final RuntimeInstance right = constants[operandAt(current + 1)];
+          if (isLocalInt(arg) && right instanceof RuntimeInteger) {
+            final boolean result = intCompare(opAt(current + 2), 
+                                              getLocalInt(arg), 
+                                              ((RuntimeInteger) right).getValue());
+            if (result) {
+              setInstrIndex(current + 3);
+            }
+            else {
+              setInstrIndex(operandAt(current + 3));
+              decrmntInstrIndex();
+            }
+            break;
+          }
+          loadLocalVar(arg);
+          break;
+        }
+        case LOAD_LOAD_ARITH_STORE: {
+          final int rightIndex = operandAt(current + 1);
+          if (isLocalInt(arg) && isLocalInt(rightIndex)) {
+            final long result = intArith(opAt(current + 2), getLocalInt(arg), getLocalInt(rightIndex));
+            storeLocalInt(operandAt(current + 3), result);
+            setInstrIndex(current + 3);
+            break;
+          }
+          loadLocalVar(arg);
+          break;
+        }
+        case LOAD_LOADC_ARITH_STORE: {
+          final RuntimeInstance right = constants[operandAt(current + 1)];
+          if (isLocalInt(arg) && right instanceof RuntimeInteger) {
+            final long result = intArith(opAt(current + 2), getLocalInt(arg), ((RuntimeInteger) right).getValue());
+            storeLocalInt(operandAt(current + 3), result);
+            setInstrIndex(current + 3);
+            break;
+          }
+          loadLocalVar(arg);
+          break;
+        }
         case CALLA:
         case CAPTURE:
         case LADD:
         case LOADSELF:
-          LOG.warn("Deprecated opcode: "+instr+" >>>>>>>>>>>>>>>");
+          LOG.warn("Deprecated opcode: "+op+" >>>>>>>>>>>>>>>");
           break;
         default:
-          LOG.warn("Unknown instruction: "+instr+" >>>>>>>>>>>>>>>>>");
+          LOG.warn("Unknown instruction: "+op+" >>>>>>>>>>>>>>>>>");
       }
       
       incrmntInstrIndex();
@@ -1217,6 +1523,273 @@ public class FunctionFrame extends StackFrame {
     return null;
   }
 
+  /**
+   * Calls a callable or data record with an ArgVector
+   * @param callable - the callable or data record
+   * @param args - the arguments (without the function and self)
+   * @param thread - the current Fiber
+   * @return the StackFrame of the call, or null if the call was 
+   *         done immediately - with its return value pushed on the operand stack. 
+   *         If the immediate call has suspended the Fiber, this frame is returned instead
+   * @throws CallSiteException - if the arguments aren't compatible with the callable
+   * @throws InvocationException - if an immediate call fails, or the target isn't callable
+   */
+  private StackFrame call(RuntimeInstance callable, ArgVector args, Fiber thread) throws CallSiteException, InvocationException {
+    if (callable instanceof RuntimeCallable) {
+      //Run the function's compiled code, if it has one that can take these arguments
+      final CompiledFunction compiled = ((RuntimeCallable) callable).getCodeObject().getCompiledFunction();
+      if (compiled != null && compiled.accepts(args)) {
+        pushInt(compiled.invoke(args));
+        return null;
+      }
+    }
+
+    if (callable instanceof Callable) {
+      final Callable actualCallable = (Callable) callable;
+      
+      final RuntimeInstance result = RuntimeUtils.fastCall(actualCallable, args, thread);
+      //System.out.println(" =================== CALL =================== ");
+      if (result != null) {
+        pushOperand(result);
+        
+        //If the call has suspended the Fiber - such as a join - yield so it can wait (see Fiber.suspend())
+        return thread.isSuspending() ? this : null;
+      }
+      return makeFrame(actualCallable, args, allocator, thread.getFramePool());
+    }
+    else if(callable instanceof RuntimeDataRecord) {
+      final RuntimeDataRecord dataRecord = (RuntimeDataRecord) callable;
+      LOG.info(" ===> call to data record!!!");
+
+      /*
+      *TODO: Should this cast be more explicitly checked? Do we want to do a sanity check 
+      *      if a "constr" attr exists? and if it does, whether it's a CodeObject?
+      */
+      final RuntimeCodeObject constructor = (RuntimeCodeObject) dataRecord.getAttr(TokenType.CONSTR.name().toLowerCase());
+      final RuntimeInstance selfObject = allocator.allocateEmptyObject();
+      final RuntimeCallable actualCallable = allocator.allocateCallable(getHostModule(), selfObject, constructor);
+
+      final RuntimeInstance result = RuntimeUtils.fastCall(actualCallable, args, thread);
+      if (result != null) {
+        pushOperand(result);
+        return null;
+      }
+      
+      final StackFrame newFrame = makeFrame(actualCallable, args, allocator, thread.getFramePool());
+      passOver = selfObject;
+      return newFrame;
+    }
+    else {
+      //unsupported operation
+      throw new InvocationException("Target isn't callable "+callable, null);
+    }
+  }
+
+  /**
+   * Checks if a callable is a RuntimeCallable taking exactly the 
+   * given amount of positional arguments, and no extra arguments.
+   */
+  private static boolean takesExactly(RuntimeInstance callable, int argCount) {
+    if (callable instanceof RuntimeCallable) {
+      final FunctionSignature signature = ((RuntimeCallable) callable).getSignature();
+      return signature.getPositionalParamCount() == argCount && 
+             !signature.hasVariableParams() && 
+             !signature.hasVarKeywordParams();
+    }
+    return false;
+  }
+
+  /**
+   * Calls a RuntimeCallable with the positional arguments on top of the operand stack,
+   * which are moved straight into the callee's local variables. (see takesExactly())
+   * @param callable - the RuntimeCallable
+   * @param argCount - the amount of arguments
+   * @param thread - the current Fiber, whose FramePool provides the frame
+   * @return the StackFrame of the call, or null if the callable's compiled code was ran instead
+   */
+  private StackFrame directCall(RuntimeCallable callable, int argCount, Fiber thread) {
+    final CompiledFunction compiled = callable.getCodeObject().getCompiledFunction();
+    if (compiled != null && intOperands(argCount)) {
+      final long [] locals = compiled.makeLocals();
+      for (int i = argCount - 1; i >= 0; i--) {
+        locals[i + 2] = popInt();
+      }
+      pushInt(compiled.invoke(locals));
+      return null;
+    }
+
+    //No ArgVector is passed, so the callee sees no keyword arguments
+    final FunctionFrame frame = thread.getFramePool().acquire(callable, null, allocator);
+    frame.storeLocalVar(0, callable);
+    frame.storeLocalVar(1, callable.getSelf());
+    for (int i = argCount - 1; i >= 0; i--) {
+      moveOperandToLocal(frame, i + 2);
+    }
+    return frame;
+  }
+
+  /**
+   * Pops arguments off the operand stack into an ArgVector
+   * @param layout - the keyword layout of the arguments, or null if they're all positional
+   * @param argCount - the amount of arguments
+   * @return the ArgVector
+   */
+  private ArgVector popArgs(String [] layout, int argCount) {
+    final RuntimeInstance [] values = new RuntimeInstance[argCount];
+    for (int i = argCount - 1; i >= 0; i--) {
+      values[i] = popOperand();
+    }
+
+    if (layout == null) {
+      return new ArgVector(values);
+    }
+
+    final ArgVector args = new ArgVector();
+    for (int i = 0; i < argCount; i++) {
+      if (layout[i].isEmpty()) {
+        args.addPositional(values[i]);
+      }
+      else {
+        args.setKeywordArg(layout[i], values[i]);
+      }
+    }
+    return args;
+  }
+
+  /**
+   * @param count - the amount of operands to check
+   * @return true if the top operands are all integers
+   */
+  private boolean intOperands(int count) {
+    for (int i = 0; i < count; i++) {
+      if (!isIntOperand(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Compiles this frame's code object, now that it's hot.
+   * 
+   * This frame keeps on being interpreted, as there's no on-stack replacement. 
+   * Only later calls to the code object may run its compiled code.
+   */
+  private void jitCompile() {
+    codeObject.setCompiledFunction(BaselineCompiler.compile(codeObject, constants));
+  }
+
+  /**
+   * Calls the operator hook of a binary operator's left operand - such as $less for LESS
+   * @param op - the operator
+   * @param left - the left operand
+   * @param right - the right operand
+   * @param allocator - the HeapAllocator to use
+   * @return the StackFrame of the hook's call, or null if the hook can't be called 
+   *         - in which case the error has been returned
+   */
+  private StackFrame callOperatorHook(OpCode op, RuntimeInstance left, RuntimeInstance right, HeapAllocator allocator) {
+    final FuncOperatorCoupling coupling = FuncOperatorCoupling.getCoupling(op);
+    final RuntimeInstance func = left.hasAttr(coupling.getFuncName()) ? left.getAttr(coupling.getFuncName()) : null;
+    
+    if (func instanceof Callable) {
+      try {
+        return makeFrame((Callable) func, new ArgVector(right), allocator);
+      } catch (CallSiteException e) {
+        returnError(allocator.allocateError(e.getMessage()));
+      }
+    }
+    else if (func != null) {
+      returnError(allocator.allocateError(op.name().toLowerCase()+" isn't a callable"));
+    }
+    else {
+      returnError(allocator.allocateError("Unsupported operation for "+op.name().toLowerCase()+" on "+left.getClass()));
+    }
+    return null;
+  }
+  
+  /**
+   * Quickens the instruction at the given index, based on the types of its operands
+   * @param instrIndex - the index of the instruction
+   * @param left - the left operand
+   * @param right - the right operand
+   * @param intOp - the quickened OpCode to use if both operands are integers
+   * @param floatOp - the quickened OpCode to use if both operands are floats (can be null)
+   */
+  private void quicken(int instrIndex, RuntimeInstance left, RuntimeInstance right, OpCode intOp, OpCode floatOp) {
+    if (left instanceof RuntimeInteger && right instanceof RuntimeInteger) {
+      codeObject.quicken(instrIndex, intOp);
+    }
+    else if (floatOp != null && left instanceof RuntimeFloat && right instanceof RuntimeFloat) {
+      codeObject.quicken(instrIndex, floatOp);
+    }
+  }
+  
+  private OpCode opAt(int instrIndex) {
+    return OpCode.fromOrdinal(code[instrIndex * RuntimeCodeObject.INSTR_WIDTH]);
+  }
+  
+  private int operandAt(int instrIndex) {
+    return code[instrIndex * RuntimeCodeObject.INSTR_WIDTH + 1];
+  }
+  
+  /*
+   * The arithmetic and comparison instructions of a superinstruction's 
+   * sequence may have been quickened, so both forms are handled.
+   */
+  
+  private static long intArith(OpCode op, long left, long right) {
+    switch (op) {
+      case ADD:
+      case ADD_INT_INT:
+      case ADD_FLOAT_FLOAT:
+      case ADD_STR:
+        return left + right;
+      case SUB:
+      case SUB_INT_INT:
+      case SUB_FLOAT_FLOAT:
+        return left - right;
+      case MUL:
+      case MUL_INT_INT:
+      case MUL_FLOAT_FLOAT:
+        return left * right;
+      default:
+        throw new IllegalStateException("Not an arithmetic instruction: "+op);
+    }
+  }
+  
+  private static boolean intCompare(OpCode op, long left, long right) {
+    switch (op) {
+      case LESS:
+      case LESS_INT_INT:
+        return left < right;
+      case GREAT:
+      case GREAT_INT_INT:
+        return left > right;
+      case LESSE:
+      case LESSE_INT_INT:
+        return left <= right;
+      case GREATE:
+      case GREATE_INT_INT:
+        return left >= right;
+      default:
+        throw new IllegalStateException("Not a comparison instruction: "+op);
+    }
+  }
+  
+  /*
+   * Guards for quickened instructions. These check the top two 
+   * operands on the operand stack without popping them.
+   */
+  
+  private boolean intOperands() {
+    return isIntOperand(0) && isIntOperand(1);
+  }
+  
+  private boolean floatOperands() {
+    return isFloatOperand(0) && isFloatOperand(1);
+  }
+  
   public void setInstrIndex(int newIndex) {
     this.instrIndex = newIndex;
   }
@@ -1237,11 +1810,11 @@ public class FunctionFrame extends StackFrame {
   }
   
   public boolean hasInstrLeft() {
-    return instrIndex < instrs.length;
+    return instrIndex < exceptionJumps.length;
   }
   
-  public ContextualInstr getCurrInstr() {
-    return instrs[instrIndex];
+  public int getCurrExceptionJump() {
+    return exceptionJumps[instrIndex];
   }
   
   public RuntimeInstance getCapture(int varIndex) {
@@ -1262,5 +1835,22 @@ public class FunctionFrame extends StackFrame {
   public RuntimeCallable getCallable() {
     return callable;
   }
+  
+  public RuntimeCodeObject getCodeObject() {
+    return codeObject;
+  }
+  
+  /**
+   * Indexes a string, as used by LOADIN's intrinsic for strings
+   * @param str - the string being indexed
+   * @param index - the index
+   * @return the character at the index (as a string), or null if the index is out of bounds
+   */
+  private RuntimeString charAt(RuntimeString str, long index) {
+    final String value = str.getValue();
+    return index >= 0 && index < value.length() ? 
+             allocator.allocateString(String.valueOf(value.charAt((int) index))) : 
+             null;
+  }
 
 }
@@ -17,8 +17,10 @@ public class JavaFrame extends StackFrame{
   
   public JavaFrame(RuntimeModule hostModule, 
                    RuntimeInternalCallable callable, 
-                   ArgVector initialArgs) {
-    super(hostModule, initialArgs);
+                   ArgVector initialArgs,
+                   HeapAllocator allocator) {
+    //A Java frame has no locals, and only ever pushes its return value
+    super(hostModule, initialArgs, allocator, 0, 1);
     this.callable = callable;
   }
   
@@ -1,9 +1,9 @@
 package jg.sh.runtime.threading.frames;
 
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
-import java.util.Stack;
 import java.util.Map.Entry;
 import java.util.stream.Collectors;
 
@@ -23,6 +23,9 @@ import jg.sh.runtime.objects.RuntimeInstance;
 import jg.sh.runtime.objects.callable.Callable;
 import jg.sh.runtime.objects.callable.RuntimeCallable;
 import jg.sh.runtime.objects.callable.RuntimeInternalCallable;
+import jg.sh.runtime.objects.literals.RuntimeFloat;
+import jg.sh.runtime.objects.literals.RuntimeInteger;
+import jg.sh.runtime.objects.literals.RuntimePrimitive;
 import jg.sh.runtime.threading.fiber.Fiber;
 import jg.sh.util.RuntimeUtils;
 
@@ -40,38 +43,101 @@ import jg.sh.util.RuntimeUtils;
  *       
  * A StackFrame is based around the Callable on which it's being invoked on and 
  * comes with:
- *   - Local variables, represented as a RuntimeInstance []
- *   - An operand stack, represented as a Stack<RuntimeInstance>
+ *   - Local variables, represented as a RuntimeInstance [] sized to the 
+ *     local variable count computed by the compiler
+ *   - An operand stack, represented as a RuntimeInstance [] preallocated to the 
+ *     maximum depth computed by the compiler, and an index to its top
+ *   - Parallel long [] for both the local variables and the operand stack, which hold
+ *     unboxed integers and floats (see below)
  *   - A flag for RuntimeError thrown within the frame - null means no exception
  *   - A reference to the frame before and after the current one
  * 
+ * Integers and floats can be held unboxed. In that case, the slot of the RuntimeInstance []
+ * holds INT_TAG or FLOAT_TAG, and the value itself is at the same slot of the parallel long [] 
+ * (floats as their raw long bits). An unboxed value is only boxed - as a RuntimeInteger or RuntimeFloat -
+ * once it's taken out through popOperand(), peekOperand() or getLocalVar(), which is how 
+ * it escapes into objects, arrays, arguments and native calls.
+ * 
  * @author Jose
  *
  */
 public abstract class StackFrame implements Markable {
   
+  /**
+   * Marks a slot as holding an unboxed value. 
+   * 
+   * These never leave a StackFrame.
+   */
+  private static final class UnboxedTag extends RuntimePrimitive {
+    private final String kind;
+    
+    private UnboxedTag(String kind) {
+      this.kind = kind;
+    }
+    
+    @Override
+    public String toString() {
+      return "<unboxed "+kind+">";
+    }
+  }
+  
+  protected static final RuntimeInstance INT_TAG = new UnboxedTag("int");
+  protected static final RuntimeInstance FLOAT_TAG = new UnboxedTag("float");
+  
   /**
    * Dictates the starting size of the localVars array
    */
   //private static final int LOCAL_VAR_INIT_AMOUNT = 1;
 
-  protected final Stack<RuntimeInstance> operandStack;
-  protected final ArgVector initialArgs;
+  protected final RuntimeInstance [] operandStack;
+  protected final long [] primOperands;
+  protected ArgVector initialArgs;
+  protected final HeapAllocator allocator;
+  
+  /**
+   * Index of the next free slot on the operand stack
+   */
+  protected int operandTop;
   
-  protected RuntimeInstance [] localVars; 
+  protected final RuntimeInstance [] localVars; 
+  protected final long [] primLocals;
   protected InvocationException error; // null <- no error, anything else <- error object
   
   private volatile boolean isDone;
   private int gcFlag;
   
   public StackFrame(RuntimeModule hostModule, 
-                    ArgVector initialArgs) {
-    this.localVars = new RuntimeInstance[0];
-    this.operandStack = new Stack<>();
+                    ArgVector initialArgs,
+                    HeapAllocator allocator,
+                    int localVarCount,
+                    int maxStackDepth) {
+    this.localVars = new RuntimeInstance[localVarCount];
+    this.primLocals = new long[localVarCount];
+    this.operandStack = new RuntimeInstance[maxStackDepth];
+    this.primOperands = new long[maxStackDepth];
     this.initialArgs = initialArgs;
+    this.allocator = allocator;
   } 
     
+  /**
+   * Runs this frame until it calls, returns or is preempted.
+   * @param allocator - the HeapAllocator to use
+   * @param thread - the Fiber running this frame
+   * @return the frame being called, this frame if it's been preempted 
+   *         (and should be ran again once its Fiber resumes), or null if this frame has returned
+   */
   public abstract StackFrame run(HeapAllocator allocator, Fiber thread);
+  
+  /**
+   * Clears this frame's local variables, operand stack and completion 
+   * state, so that it may be reused for another call (see FramePool)
+   */
+  protected void reset() {
+    Arrays.fill(localVars, null);
+    clearOpStack();
+    this.error = null;
+    this.isDone = false;
+  }
     
   /**
    * Meant to be called when a value is being returned by a stack frame.
@@ -87,20 +153,103 @@ public abstract class StackFrame implements Markable {
     this.isDone = true;
   }
   
+  /**
+   * Like returnValue(), but returns the value already on top 
+   * of the operand stack - without boxing it if it's unboxed.
+   */
+  protected void returnTopOperand() {
+    assert operandTop > 0 : "Operand stack underflow in "+getCallable();
+    this.isDone = true;
+  }
+  
+  /**
+   * Pops the top operand of this frame and pushes it on another frame's operand stack,
+   * without boxing it if it's unboxed.
+   * @param other - the StackFrame to push the operand on
+   */
+  public void moveOperandTo(StackFrame other) {
+    assert operandTop > 0 : "Operand stack underflow in "+getCallable();
+    final int top = --operandTop;
+    assert other.operandTop < other.operandStack.length : "Operand stack overflow in "+other.getCallable();
+    other.operandStack[other.operandTop] = operandStack[top];
+    other.primOperands[other.operandTop++] = primOperands[top];
+    operandStack[top] = null;
+  }
+  
+  /**
+   * Pops the top operand of this frame into a local variable of another frame,
+   * without boxing it if it's unboxed.
+   * 
+   * This is how arguments are passed by the arity-specialized CALL instructions.
+   * @param other - the StackFrame whose local variable is set
+   * @param varIndex - the index of the local variable
+   */
+  public void moveOperandToLocal(StackFrame other, int varIndex) {
+    assert operandTop > 0 : "Operand stack underflow in "+getCallable();
+    final int top = --operandTop;
+    other.localVars[varIndex] = operandStack[top];
+    other.primLocals[varIndex] = primOperands[top];
+    operandStack[top] = null;
+  }
+  
   public RuntimeInstance getLocalVar(int varIndex) {
-    return localVars[varIndex];
+    final RuntimeInstance value = localVars[varIndex];
+    if (value == INT_TAG || value == FLOAT_TAG) {
+      //Box the value, and keep the box so that later loads don't allocate again
+      final RuntimeInstance boxed = box(value, primLocals[varIndex]);
+      localVars[varIndex] = boxed;
+      return boxed;
+    }
+    return value;
+  }
+  
+  /**
+   * Pushes a local variable on the operand stack, without boxing it if it's unboxed.
+   * @param varIndex - the index of the local variable
+   */
+  public void loadLocalVar(int varIndex) {
+    assert operandTop < operandStack.length : "Operand stack overflow in "+getCallable()+" (max depth: "+operandStack.length+")";
+    operandStack[operandTop] = localVars[varIndex];
+    primOperands[operandTop++] = primLocals[varIndex];
+  }
+  
+  /**
+   * Pops the top operand into a local variable, without boxing it if it's unboxed.
+   * @param varIndex - the index of the local variable
+   */
+  public void storeTopToLocalVar(int varIndex) {
+    assert operandTop > 0 : "Operand stack underflow in "+getCallable();
+    final int top = --operandTop;
+    localVars[varIndex] = operandStack[top];
+    primLocals[varIndex] = primOperands[top];
+    operandStack[top] = null;
+  }
+  
+  public void storeLocalInt(int varIndex, long value) {
+    localVars[varIndex] = INT_TAG;
+    primLocals[varIndex] = value;
+  }
+  
+  /**
+   * @param varIndex - the index of the local variable
+   * @return true if the local variable is an integer (either boxed or unboxed)
+   */
+  public boolean isLocalInt(int varIndex) {
+    final RuntimeInstance value = localVars[varIndex];
+    return value == INT_TAG || value instanceof RuntimeInteger;
+  }
+  
+  /**
+   * Reads an integer local variable. The local variable must be an integer (see isLocalInt())
+   * @param varIndex - the index of the local variable
+   * @return the value of the local variable
+   */
+  public long getLocalInt(int varIndex) {
+    final RuntimeInstance value = localVars[varIndex];
+    return value == INT_TAG ? primLocals[varIndex] : ((RuntimeInteger) value).getValue();
   }
 
   public void storeLocalVar(int varIndex, RuntimeInstance value) {
-    if (varIndex >= localVars.length) {
-      //Increase the size of the localVars array
-      final RuntimeInstance [] newLocals = new RuntimeInstance[varIndex + 1];
-      
-      System.arraycopy(localVars, 0, newLocals, 0, localVars.length);
-      
-      localVars = newLocals;
-    }
-    
     //System.out.println("--- lvar store: "+localVars.length+" , "+varIndex+" , "+value+" , null? "+(value == null)+" | "+getClass());
     
     localVars[varIndex] = value;
@@ -110,8 +259,29 @@ public abstract class StackFrame implements Markable {
     this.error = new InvocationException(error, getCallable());
   }
   
+  /*
+   * The operand stack is sized by the compiler's analysis of the 
+   * frame's instructions, so overflowing or underflowing it is a compiler bug.
+   * 
+   * The checks below are only done when assertions are enabled (-ea), which 
+   * pinpoints the offending frame rather than failing on an array index.
+   */
+  
   public void pushOperand(RuntimeInstance value) {
-    operandStack.push(value);
+    assert operandTop < operandStack.length : "Operand stack overflow in "+getCallable()+" (max depth: "+operandStack.length+")";
+    operandStack[operandTop++] = value;
+  }
+  
+  public void pushInt(long value) {
+    assert operandTop < operandStack.length : "Operand stack overflow in "+getCallable()+" (max depth: "+operandStack.length+")";
+    operandStack[operandTop] = INT_TAG;
+    primOperands[operandTop++] = value;
+  }
+  
+  public void pushFloat(double value) {
+    assert operandTop < operandStack.length : "Operand stack overflow in "+getCallable()+" (max depth: "+operandStack.length+")";
+    operandStack[operandTop] = FLOAT_TAG;
+    primOperands[operandTop++] = Double.doubleToRawLongBits(value);
   }
 
   public boolean isDone() {
@@ -119,22 +289,77 @@ public abstract class StackFrame implements Markable {
   }
   
   public RuntimeInstance popOperand() {
-    return operandStack.pop();
+    assert operandTop > 0 : "Operand stack underflow in "+getCallable();
+    final RuntimeInstance value = operandStack[--operandTop];
+    operandStack[operandTop] = null;
+    return value == INT_TAG || value == FLOAT_TAG ? box(value, primOperands[operandTop]) : value;
   }
   
   public RuntimeInstance peekOperand() {
-    return operandStack.peek();
+    assert operandTop > 0 : "Operand stack underflow in "+getCallable();
+    final RuntimeInstance value = operandStack[operandTop - 1];
+    if (value == INT_TAG || value == FLOAT_TAG) {
+      //Box the value in place, so that popping it returns the same instance
+      final RuntimeInstance boxed = box(value, primOperands[operandTop - 1]);
+      operandStack[operandTop - 1] = boxed;
+      return boxed;
+    }
+    return value;
   }
   
-  public boolean hasOperand() {
-    return !operandStack.isEmpty();
+  /**
+   * Pops an integer operand. The operand must be an integer (see isIntOperand())
+   * @return the value of the operand
+   */
+  public long popInt() {
+    assert operandTop > 0 : "Operand stack underflow in "+getCallable();
+    final RuntimeInstance value = operandStack[--operandTop];
+    operandStack[operandTop] = null;
+    return value == INT_TAG ? primOperands[operandTop] : ((RuntimeInteger) value).getValue();
+  }
+  
+  /**
+   * Pops a float operand. The operand must be a float (see isFloatOperand())
+   * @return the value of the operand
+   */
+  public double popFloat() {
+    assert operandTop > 0 : "Operand stack underflow in "+getCallable();
+    final RuntimeInstance value = operandStack[--operandTop];
+    operandStack[operandTop] = null;
+    return value == FLOAT_TAG ? Double.longBitsToDouble(primOperands[operandTop]) : ((RuntimeFloat) value).getValue();
   }
   
-  public Stack<RuntimeInstance> getOperandStack() {
-    return operandStack;
+  /**
+   * @param depth - the depth of the operand, where 0 is the top of the operand stack
+   * @return true if the operand at the given depth is an integer (either boxed or unboxed)
+   */
+  public boolean isIntOperand(int depth) {
+    final RuntimeInstance value = operandStack[operandTop - 1 - depth];
+    return value == INT_TAG || value instanceof RuntimeInteger;
+  }
+  
+  /**
+   * @param depth - the depth of the operand, where 0 is the top of the operand stack
+   * @return true if the operand at the given depth is a float (either boxed or unboxed)
+   */
+  public boolean isFloatOperand(int depth) {
+    final RuntimeInstance value = operandStack[operandTop - 1 - depth];
+    return value == FLOAT_TAG || value instanceof RuntimeFloat;
+  }
+  
+  private RuntimeInstance box(RuntimeInstance tag, long value) {
+    return tag == INT_TAG ? allocator.allocateInt(value) : allocator.allocateFloat(Double.longBitsToDouble(value));
+  }
+  
+  public boolean hasOperand() {
+    return operandTop > 0;
   }
   
   public RuntimeInstance [] getLocalVars() {
+    //Box any unboxed local variables first, so they don't escape as tags
+    for (int i = 0; i < localVars.length; i++) {
+      getLocalVar(i);
+    }
     return localVars;
   }
   
@@ -162,13 +387,15 @@ public abstract class StackFrame implements Markable {
     //mark local variables
     for(RuntimeInstance value : localVars) {
       //System.out.println("  LVAR is null? "+(value == null));
-      cleaner.gcMarkObject(value);
+      if (value != null) {
+        cleaner.gcMarkObject(value);
+      }
     }
           
     //mark all values in the operand stack
-    for(RuntimeInstance value : operandStack) {
-      //System.out.println("marking value: "+value);
-      cleaner.gcMarkObject(value);
+    for(int i = 0; i < operandTop; i++) {
+      //System.out.println("marking value: "+operandStack[i]);
+      cleaner.gcMarkObject(operandStack[i]);
     }
     
     markAdditional(cleaner);
@@ -185,7 +412,9 @@ public abstract class StackFrame implements Markable {
   }
   
   public void clearOpStack() {
-    operandStack.clear();
+    while (operandTop > 0) {
+      operandStack[--operandTop] = null;
+    }
   }
   
   public abstract Callable getCallable();
@@ -193,14 +422,22 @@ public abstract class StackFrame implements Markable {
   public static StackFrame makeFrame(Callable callable, 
                                      ArgVector args, 
                                      HeapAllocator allocator) throws CallSiteException {
-
-    /*
-     * At Index 0 -> callable
-     * At Index 1 -> self object
-     */
-    args.addAtFront(callable.getSelf());
-    args.addAtFront(callable);
-    
+    return makeFrame(callable, args, allocator, null);
+  }
+  
+  /**
+   * Makes the StackFrame for a call
+   * @param callable - the Callable being called
+   * @param args - the arguments (without the function and self)
+   * @param allocator - the HeapAllocator to use
+   * @param framePool - the FramePool to take a FunctionFrame from, or null to always make a new one
+   * @return the StackFrame for the call
+   * @throws CallSiteException - if the arguments aren't compatible with the Callable
+   */
+  public static StackFrame makeFrame(Callable callable, 
+                                     ArgVector args, 
+                                     HeapAllocator allocator,
+                                     FramePool framePool) throws CallSiteException {
     final FunctionSignature signature = callable.getSignature();
     
     /*
@@ -217,47 +454,67 @@ public abstract class StackFrame implements Markable {
     if (callable instanceof RuntimeInternalCallable) {
       //System.out.println("CALLING!!!!! internal ");
 
+      /*
+       * At Index 0 -> callable
+       * At Index 1 -> self object
+       */
+      args.addAtFront(callable.getSelf());
+      args.addAtFront(callable);
+
       RuntimeInternalCallable internalCallable = (RuntimeInternalCallable) callable;
-      toReturn = new JavaFrame(internalCallable.getHostModule(), internalCallable, args);
+      toReturn = new JavaFrame(internalCallable.getHostModule(), internalCallable, args, allocator);
     }
     else {
-      //System.out.println("CALLING!!!!! user space "+args.getPositionals().size());
+      //System.out.println("CALLING!!!!! user space "+args.getPositionalCount());
       
       RuntimeCallable regularCallable = (RuntimeCallable) callable;
 
-      FunctionFrame frame = new FunctionFrame(regularCallable.getHostModule(), regularCallable, 0, args);
+      FunctionFrame frame = framePool != null ? 
+                              framePool.acquire(regularCallable, args, allocator) : 
+                              new FunctionFrame(regularCallable.getHostModule(), regularCallable, 0, args, allocator);
       //Push the new frame!
-      //System.out.println("------> PUSHED FRAME "+args.getPositional(0));
 
-      //Set positional arguments to the calle's local variables
-      int positionalIndex = 0;
-      for(; positionalIndex < signature.getPositionalParamCount() + 2 ; positionalIndex++) {
-        //System.out.println(" -- setting local: "+positionalIndex+" with val: "+args.getPositional(positionalIndex));
-        frame.storeLocalVar(positionalIndex, args.getPositional(positionalIndex));
+      /*
+       * Arguments are written straight to the callee's local variables:
+       * At Index 0 -> callable
+       * At Index 1 -> self object
+       * Then, the positional arguments
+       */
+      frame.storeLocalVar(0, callable);
+      frame.storeLocalVar(1, callable.getSelf());
+
+      final int paramCount = signature.getPositionalParamCount();
+      for(int i = 0; i < paramCount; i++) {
+        frame.storeLocalVar(i + 2, args.positionalAt(i));
       }
       
       /**
        * We combine keyword arguments and extra keyword argument setting 
        * in one go, by readily allocating the keywordVarArg object and using it's 
        * initialization parameter to decide which keyword args go in keywordVarArg object
-       * or be saved directly as a local variable
+       * or be saved directly as a local variable.
+       * 
+       * This is skipped entirely if no keyword arguments are passed, and the function 
+       * doesn't take extra keyword arguments.
        */
-      final Map<String, Integer> keywordToIndexMap = regularCallable.getCodeObject().getKeywordIndexes();
-      final RuntimeInstance leftOverKeywords = allocator.allocateEmptyObject((ini, self) -> {
-        for (Entry<String, RuntimeInstance> keywordArg : args.getAttributes().entrySet()) {
-          if(keywordToIndexMap.containsKey(keywordArg.getKey())) {
-            int keywordIndex = keywordToIndexMap.get(keywordArg.getKey());
-            //System.out.println("        ===> saving as local: "+keywordIndex);
-            frame.storeLocalVar(keywordIndex, keywordArg.getValue());
+      if (args.hasKeywordArgs() || signature.hasVarKeywordParams()) {
+        final Map<String, Integer> keywordToIndexMap = regularCallable.getCodeObject().getKeywordIndexes();
+        final RuntimeInstance leftOverKeywords = allocator.allocateEmptyObject((ini, self) -> {
+          for (Entry<String, RuntimeInstance> keywordArg : args.getKeywordArgs().entrySet()) {
+            if(keywordToIndexMap.containsKey(keywordArg.getKey())) {
+              int keywordIndex = keywordToIndexMap.get(keywordArg.getKey());
+              //System.out.println("        ===> saving as local: "+keywordIndex);
+              frame.storeLocalVar(keywordIndex, keywordArg.getValue());
+            }
+            else if(!signature.getKeywordParams().contains(keywordArg.getKey())) {
+              ini.init(keywordArg.getKey(), keywordArg.getValue());
+            }
           }
-          else if(!signature.getKeywordParams().contains(keywordArg.getKey())) {
-            ini.init(keywordArg.getKey(), keywordArg.getValue());
-          }
-        }
-      });
+        });
 
-      if (signature.hasVarKeywordParams()) {
-        frame.storeLocalVar(regularCallable.getCodeObject().getKeywordVarArgIndex(), leftOverKeywords);
+        if (signature.hasVarKeywordParams()) {
+          frame.storeLocalVar(regularCallable.getCodeObject().getKeywordVarArgIndex(), leftOverKeywords);
+        }
       }
       
       //System.out.println("------------> DONE WITH ARGS");
@@ -265,9 +522,8 @@ public abstract class StackFrame implements Markable {
       //Put any leftover positional arguments in an array
       if (signature.hasVariableParams()) {
         final RuntimeArray leftOvers = allocator.allocateEmptyArray();
-        //System.out.println(" ===> STARTING VARARGS: "+(positionalIndex + 1)+" | "+args.getPositionals().size()+" | "+args.getPositionals());
-        for(int i = positionalIndex; i < args.getPositionals().size(); i++) {
-          leftOvers.addValue(args.getPositional(i));
+        for(int i = paramCount; i < args.getPositionalCount(); i++) {
+          leftOvers.addValue(args.positionalAt(i), allocator);
         }
 
         frame.storeLocalVar(regularCallable.getCodeObject().getVarArgIndex(), leftOvers);
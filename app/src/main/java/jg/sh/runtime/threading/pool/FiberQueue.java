@@ -0,0 +1,290 @@
+package jg.sh.runtime.threading.pool;
+
+import java.io.PrintStream;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import jg.sh.runtime.threading.fiber.Fiber;
+
+/**
+ * The queue of Fibers that RunnerThreads pull from.
+ * 
+ * In work-stealing mode, each RunnerThread also has a local deque. Fibers queued
+ * by a RunnerThread - those it spawns, and those it has just advanced - go to its
+ * local deque, while Fibers queued from elsewhere go to the shared queue. A RunnerThread
+ * pulls from its local deque first, then the shared queue, and then steals from the 
+ * back of the other RunnerThreads' deques. This keeps RunnerThreads off of one shared 
+ * head and tail when many Fibers are spawned and time-sliced.
+ *
+ * A RunnerThread that finds this queue empty first spins for a while
+ * (see SPIN_NANOS) - as a Fiber is likely to be queued soon after - and then parks
+ * until a Fiber is offered. Offering a Fiber unparks one parked RunnerThread, if any.
+ *
+ * A parked RunnerThread first registers itself as a Waiter, and then checks
+ * the queue - and whether it's been closed - once more before parking, so neither
+ * an offer nor close() is ever missed.
+ *
+ * The time RunnerThreads spend spinning and parked - as well as how long
+ * it takes them to wake up once signalled - is recorded (see report())
+ *
+ * @author Jose
+ */
+public class FiberQueue {
+
+  /**
+   * How long a RunnerThread spins on an empty queue before parking
+   */
+  private static final long SPIN_NANOS = 50_000;
+
+  /**
+   * A parked RunnerThread
+   */
+  private static class Waiter {
+    private final Thread thread;
+
+    /*
+     * When this Waiter was signalled, or 0 if it hasn't been
+     */
+    private volatile long signalledAt;
+
+    private Waiter(Thread thread) {
+      this.thread = thread;
+    }
+  }
+
+  private final ConcurrentLinkedQueue<Fiber> fibers;
+  private final ConcurrentLinkedQueue<Waiter> waiters;
+  
+  /*
+   * The local deque of each RunnerThread, by its index. Null if not in work-stealing mode
+   */
+  private final ConcurrentLinkedDeque<Fiber> [] locals;
+
+  private final LongAdder parks;
+  private final LongAdder parkedNanos;
+  private final LongAdder spinNanos;
+  private final LongAdder wakeUps;
+  private final LongAdder wakeUpNanos;
+  private final LongAdder steals;
+
+  private volatile boolean closed;
+
+  /**
+   * Constructs a FiberQueue
+   * @param runnerCount - the amount of RunnerThreads pulling from this FiberQueue
+   * @param workStealing - whether each RunnerThread should have its own local deque
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public FiberQueue(int runnerCount, boolean workStealing) {
+    this.fibers = new ConcurrentLinkedQueue<>();
+    this.waiters = new ConcurrentLinkedQueue<>();
+    
+    if (workStealing) {
+      this.locals = new ConcurrentLinkedDeque[runnerCount];
+      for (int i = 0; i < runnerCount; i++) {
+        locals[i] = new ConcurrentLinkedDeque<>();
+      }
+    }
+    else {
+      this.locals = null;
+    }
+    
+    this.parks = new LongAdder();
+    this.parkedNanos = new LongAdder();
+    this.spinNanos = new LongAdder();
+    this.wakeUps = new LongAdder();
+    this.wakeUpNanos = new LongAdder();
+    this.steals = new LongAdder();
+  }
+
+  /**
+   * Queues a Fiber, waking up a parked RunnerThread to run it.
+   * 
+   * In work-stealing mode, a Fiber queued by a RunnerThread goes to its local deque.
+   * @param fiber - the Fiber to queue
+   */
+  public void offer(Fiber fiber) {
+    final Thread current = Thread.currentThread();
+    if (locals != null && current instanceof RunnerThread && ((RunnerThread) current).getTaskQueue() == this) {
+      locals[((RunnerThread) current).getIndex()].offerLast(fiber);
+    }
+    else {
+      fibers.offer(fiber);
+    }
+    signal();
+  }
+
+  /**
+   * Queues a Fiber that a RunnerThread has just advanced, without waking up a
+   * parked RunnerThread.
+   *
+   * The RunnerThread requeuing the Fiber is about to pull from this queue anyway,
+   * so waking up another would have them race for the same Fiber.
+   * @param fiber - the Fiber to requeue
+   * @param runner - the index of the RunnerThread requeuing the Fiber
+   */
+  public void requeue(Fiber fiber, int runner) {
+    if (locals != null) {
+      locals[runner].offerLast(fiber);
+    }
+    else {
+      fibers.offer(fiber);
+    }
+  }
+
+  /**
+   * Retrieves the next Fiber, spinning and then parking until there is one.
+   * @param runner - the index of the RunnerThread retrieving the Fiber
+   * @return the next Fiber, or null if this queue has been closed
+   */
+  public Fiber take(int runner) {
+    Fiber fiber = poll(runner);
+    if (fiber != null) {
+      return fiber;
+    }
+
+    //Spin for a while
+    final long spinStart = System.nanoTime();
+    long now = spinStart;
+    while (!closed && now - spinStart < SPIN_NANOS) {
+      fiber = poll(runner);
+      if (fiber != null) {
+        spinNanos.add(System.nanoTime() - spinStart);
+        return fiber;
+      }
+      now = System.nanoTime();
+    }
+    spinNanos.add(now - spinStart);
+
+    //Then park
+    final Waiter waiter = new Waiter(Thread.currentThread());
+    while (!closed) {
+      waiters.offer(waiter);
+
+      /*
+       * close() sets closed before unparking its waiters, so if it 
+       * drained the waiters before this one was registered, it's seen here.
+       */
+      if (closed) {
+        break;
+      }
+
+      fiber = poll(runner);
+      if (fiber != null) {
+        if (!waiters.remove(waiter)) {
+          //This waiter was signalled, so pass the signal on to another
+          signal();
+        }
+        return fiber;
+      }
+
+      final long parkStart = System.nanoTime();
+      LockSupport.park(this);
+      final long parkEnd = System.nanoTime();
+
+      parks.increment();
+      parkedNanos.add(parkEnd - parkStart);
+
+      final long signalledAt = waiter.signalledAt;
+      if (signalledAt != 0) {
+        wakeUps.increment();
+        wakeUpNanos.add(parkEnd - signalledAt);
+        waiter.signalledAt = 0;
+      }
+      else {
+        //A spurious wake-up
+        waiters.remove(waiter);
+      }
+
+      fiber = poll(runner);
+      if (fiber != null) {
+        return fiber;
+      }
+    }
+
+    waiters.remove(waiter);
+    return poll(runner);
+  }
+
+  /**
+   * Closes this queue, waking up all parked RunnerThreads.
+   *
+   * Once closed, take() no longer blocks.
+   */
+  public void close() {
+    closed = true;
+    fibers.clear();
+    if (locals != null) {
+      for (ConcurrentLinkedDeque<Fiber> local : locals) {
+        local.clear();
+      }
+    }
+
+    Waiter waiter;
+    while ((waiter = waiters.poll()) != null) {
+      LockSupport.unpark(waiter.thread);
+    }
+  }
+
+  /**
+   * Prints how long RunnerThreads have been idle on this queue.
+   * @param out - the PrintStream to print to
+   */
+  public void report(PrintStream out) {
+    final long wakeUps = this.wakeUps.sum();
+
+    out.println("---- Runner idle times ----");
+    out.println("  spinning: "+(spinNanos.sum() / 1000000)+" ms");
+    out.println("  parked: "+(parkedNanos.sum() / 1000000)+" ms, over "+parks.sum()+" parks");
+    out.println("  wake-ups: "+wakeUps+", at a mean latency of "+
+                (wakeUps == 0 ? 0 : wakeUpNanos.sum() / wakeUps / 1000)+" us");
+    if (locals != null) {
+      out.println("  steals: "+steals.sum());
+    }
+    out.println("---------------------------");
+  }
+
+  /**
+   * Retrieves the next Fiber for a RunnerThread without waiting
+   * @param runner - the index of the RunnerThread
+   * @return the next Fiber, or null if there's none
+   */
+  private Fiber poll(int runner) {
+    if (locals == null) {
+      return fibers.poll();
+    }
+    
+    Fiber fiber = locals[runner].pollFirst();
+    if (fiber != null) {
+      return fiber;
+    }
+    
+    fiber = fibers.poll();
+    if (fiber != null) {
+      return fiber;
+    }
+    
+    //Steal from the back of the other runners' deques, starting with the next runner
+    for (int i = 1; i < locals.length; i++) {
+      fiber = locals[(runner + i) % locals.length].pollLast();
+      if (fiber != null) {
+        steals.increment();
+        return fiber;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Wakes up a parked RunnerThread, if any
+   */
+  private void signal() {
+    final Waiter waiter = waiters.poll();
+    if (waiter != null) {
+      waiter.signalledAt = System.nanoTime();
+      LockSupport.unpark(waiter.thread);
+    }
+  }
+}
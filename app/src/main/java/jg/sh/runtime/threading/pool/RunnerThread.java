@@ -1,6 +1,5 @@
 package jg.sh.runtime.threading.pool;
 
-import java.util.Queue;
 import java.util.function.Consumer;
 
 import org.apache.logging.log4j.LogManager;
@@ -10,29 +9,45 @@ import jg.sh.runtime.threading.fiber.Fiber;
 import jg.sh.runtime.threading.fiber.FiberStatus;
 
 /**
- * A worker thread that executes a Fiber from a task queue
- * one frame at a time.
+ * A worker thread that executes a Fiber from a task queue,
+ * for a time slice of a certain amount of instructions at a time.
+ * 
+ * When there's no Fiber to execute, a RunnerThread spins and 
+ * then parks on its task queue (see FiberQueue.take())
  */
 public class RunnerThread extends Thread {
 
-  private static final int FRAME_AMOUNT = 10;
   private static int THREAD_ID_COUNTER = 1;
 
   private static Logger LOG = LogManager.getLogger(RunnerThread.class);
 
-  private final Queue<Fiber> taskQueue;
+  private final FiberQueue taskQueue;
   private final Consumer<Fiber> fiberCompleter;
   private final int id;
+  
+  /*
+   * The index of this RunnerThread in its ThreadPool
+   */
+  private final int index;
+  
+  /*
+   * The amount of instructions a Fiber executes before yielding
+   */
+  private final int timeSlice;
 
   private volatile boolean stop;
     
   /**
    * Constructs a RunnerThread
-   * @param taskQueue - the Queue to pull Fibers to work on
+   * @param taskQueue - the FiberQueue to pull Fibers to work on
+   * @param index - the index of this RunnerThread in its ThreadPool
+   * @param timeSlice - the amount of instructions a Fiber executes before yielding
    * @param fiberCompleter - the Consumer to report Fibers that have completed/terminated
    */
-  public RunnerThread(Queue<Fiber> taskQueue, Consumer<Fiber> fiberCompleter) {
+  public RunnerThread(FiberQueue taskQueue, int index, int timeSlice, Consumer<Fiber> fiberCompleter) {
     this.taskQueue = taskQueue;
+    this.index = index;
+    this.timeSlice = timeSlice;
     this.fiberCompleter = fiberCompleter;
     this.id = THREAD_ID_COUNTER++;
     setName("Runner Thread "+this.id);
@@ -50,23 +65,23 @@ public class RunnerThread extends Thread {
   @Override
   public void run() {
     while (!stop) {
-      final Fiber exec = taskQueue.poll();
+      final Fiber exec = taskQueue.take(index);
       //System.out.println(" === pass over swithc! "+id);
 
       if (exec != null) {
         //Set fiber status to running
         exec.setStatus(FiberStatus.RUNNING);
 
-        int frameCount = 0;
-        while (frameCount < FRAME_AMOUNT && exec.hasFrame()) {
-          exec.advanceFrame();
-          frameCount++;
-        }
+        exec.advance(timeSlice);
 
-        if (exec.hasFrame()) {
+        if (exec.park()) {
+          //The fiber is waiting for another fiber, which re-queues it once done (see Fiber.join())
+          continue;
+        }
+        else if (exec.hasFrame()) {
           //If the fiber has a pending frame, add it back to the taskqueue
           exec.setStatus(FiberStatus.IN_QUEUE);
-          taskQueue.add(exec);
+          taskQueue.requeue(exec, index);
         }
         else {
           //The fiber has no more pending frames, marking its completion
@@ -115,4 +130,12 @@ public class RunnerThread extends Thread {
   public int getRunnerId() {
     return id;
   }
+  
+  public int getIndex() {
+    return index;
+  }
+  
+  public FiberQueue getTaskQueue() {
+    return taskQueue;
+  }
 }
@@ -1,7 +1,5 @@
 package jg.sh.runtime.threading.pool;
 
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.Consumer;
 
 import jg.sh.runtime.threading.fiber.Fiber;
@@ -14,9 +12,11 @@ public class ThreadPool {
     
   private final RunnerThread [] runners;
 
-  private final ConcurrentLinkedQueue<Fiber> fiberQueue;
+  private final FiberQueue fiberQueue;
 
   private final Consumer<Fiber> fiberReporter;
+  
+  private final int timeSlice;
 
   private boolean hasBeenInitialized;
   private boolean hasStarted;
@@ -25,10 +25,13 @@ public class ThreadPool {
   /**
    * Constructs a ThreadPool
    * @param poolSize - the amount of threads this ThreadPool is meant to manage
+   * @param workStealing - whether each thread should have its own local queue (see FiberQueue)
+   * @param timeSlice - the amount of instructions a Fiber executes before yielding
    */
-  public ThreadPool(int poolSize, Consumer<Fiber> reporter) {
+  public ThreadPool(int poolSize, boolean workStealing, int timeSlice, Consumer<Fiber> reporter) {
+    this.timeSlice = timeSlice;
     this.runners = new RunnerThread[poolSize];
-    this.fiberQueue = new ConcurrentLinkedQueue<>();
+    this.fiberQueue = new FiberQueue(poolSize, workStealing);
     this.fiberReporter = reporter;
   }
 
@@ -49,7 +52,7 @@ public class ThreadPool {
   public void initialize() {
     if (!hasBeenInitialized) {
       for (int i = 0; i < runners.length; i++) {
-        runners[i] = new RunnerThread(fiberQueue, fiberReporter);
+        runners[i] = new RunnerThread(fiberQueue, i, timeSlice, fiberReporter);
       }
 
       this.hasBeenInitialized = true;
@@ -71,16 +74,17 @@ public class ThreadPool {
 
   public void stop() {
     if (hasStarted && hasBeenInitialized) {
-      fiberQueue.clear();
-
       for (RunnerThread runnerThread : runners) {
         runnerThread.stop(true);
       }
+      
+      //Wakes up parked runners so they see their stop-flag
+      fiberQueue.close();
       this.hasStopped = true;
     }
   }
 
-  public ConcurrentLinkedQueue<Fiber> getTaskQueue() {
+  public FiberQueue getTaskQueue() {
       return fiberQueue;
   }
 
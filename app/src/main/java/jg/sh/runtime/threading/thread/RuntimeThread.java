@@ -1,5 +1,6 @@
 package jg.sh.runtime.threading.thread;
 
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Consumer;
 
 import org.apache.logging.log4j.LogManager;
@@ -64,8 +65,17 @@ public class RuntimeThread extends Fiber {
   private void startInternal() {
     try {
       setStatus(FiberStatus.RUNNING);
+      //A RuntimeThread has its own Java thread, and so never needs to yield
       while (hasFrame()) {
-        advanceFrame();
+        advance(Long.MAX_VALUE);
+        
+        if (park()) {
+          //Waiting for another fiber. Block until resumed (see wake())
+          while (isParked()) {
+            LockSupport.park(this);
+          }
+          setStatus(FiberStatus.RUNNING);
+        }
       }
 
       markEndTime();
@@ -84,6 +94,15 @@ public class RuntimeThread extends Fiber {
     fiberReporter.accept(this);
   }
   
+  /**
+   * Unblocks this RuntimeThread's backing thread, rather than 
+   * queuing it into the thread pool.
+   */
+  @Override
+  protected void wake() {
+    LockSupport.unpark(thread);
+  }
+  
   /**
    * Starts this RuntimeThread
    */
@@ -26,20 +26,23 @@ import jg.sh.runtime.threading.fiber.Fiber;
  */
 public final class RuntimeUtils {
 
+  /**
+   * Checks if the given arguments are compatible with a FunctionSignature
+   * @param callable - the Callable being invoked
+   * @param signature - the FunctionSignature of the Callable
+   * @param args - the arguments, without the function itself and the self object
+   * @return a CallSiteException describing the incompatibility, or null if the arguments are compatible
+   */
   public static CallSiteException checkArgs(Callable callable, FunctionSignature signature, ArgVector args) {
-    //-2 from positional size as the first two arguments are self and the function itself
-    if (args.getPositionals().size() - 2 < signature.getPositionalParamCount()) {
+    if (args.getPositionalCount() < signature.getPositionalParamCount()) {
       return new CallSiteException("The function requires "+signature.getPositionalParamCount()+" positional arguments", callable);
     }
-    if (args.getPositionals().size() - 2 > signature.getPositionalParamCount() && !signature.hasVariableParams()) {
-      //System.out.println(" === minus 2: "+(args.getPositionals().size() - 2)+" | expected: "+signature.getPositionalParamCount());
-      //System.out.println(" ===> "+args.getPositionals().stream().map(x -> x.getClass().getName()).collect(Collectors.joining(",")));
-      //System.out.println(" ===> "+args.getPositionals());
-      return new CallSiteException("Excess positional arguments. The function doesn't accept variable argument amount! "+args.getPositionals().size(), callable);
+    if (args.getPositionalCount() > signature.getPositionalParamCount() && !signature.hasVariableParams()) {
+      return new CallSiteException("Excess positional arguments. The function doesn't accept variable argument amount! "+(args.getPositionalCount() + 2), callable);
     }
 
-    if(args.attrs().size() > 0 && !signature.hasVarKeywordParams()) {
-      final Set<String> extraKeyswords = Sets.difference(args.attrs(), signature.getKeywordParams());
+    if(args.hasKeywordArgs() && !signature.hasVarKeywordParams()) {
+      final Set<String> extraKeyswords = Sets.difference(args.getKeywordArgs().keySet(), signature.getKeywordParams());
       if (extraKeyswords.size() > 0) {
         return new CallSiteException("Unknown keyword arguments '"+extraKeyswords+"'", callable);
       }
@@ -63,14 +66,14 @@ public final class RuntimeUtils {
       final ImmediateInternalCallable internalCallable = (ImmediateInternalCallable) callable;
       final FunctionSignature signature = internalCallable.getSignature();
 
-      args.addAtFront(callable.getSelf());
-      args.addAtFront(callable);
-
       final CallSiteException exception = checkArgs(internalCallable, signature, args);
       if (exception != null) {
         throw exception;
       }
 
+      args.addAtFront(callable.getSelf());
+      args.addAtFront(callable);
+
       return internalCallable.getFunction().invoke(currentFiber, args);
     }
     return null;
@@ -1,5 +1,7 @@
 package jg.sh.compile;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import java.io.InputStreamReader;
@@ -8,6 +10,8 @@ import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.Test;
 
+import jg.sh.compile.instrs.OpCode;
+import jg.sh.compile.pool.component.CodeObject;
 import jg.sh.parsing.Module;
 import jg.sh.parsing.Parser;
 import jg.sh.parsing.Tokenizer;
@@ -36,6 +40,66 @@ public class IRCompileTest {
     }
   }
 
+  @Test
+  public void testMaxStackDepth() {
+    try {
+      final Module module = compileModule("stackDepth.shr");
+      final IRCompiler compiler = new IRCompiler();
+      CompilerResult result = compiler.compileModule(module);
+
+      if (!result.isSuccessful()) {
+        fail(result.getValidationExceptions().stream()
+                                             .map(x -> x.getMessage())
+                                             .collect(Collectors.joining(System.lineSeparator())));
+      }
+
+      final ObjectFile objectFile = result.getObjectFile();
+      final CodeObject add3 = objectFile.getPool().getMembers().stream()
+                                                 .filter(x -> x instanceof CodeObject)
+                                                 .map(x -> (CodeObject) x)
+                                                 .findFirst()
+                                                 .get();
+
+      //a, b and c are all on the operand stack before the first addition
+      assertEquals(3, add3.getMaxStackDepth());
+
+      //The three arguments and add3, which CALL3 takes straight off the operand stack
+      assertEquals(4, objectFile.getModuleMaxStackDepth());
+      assertTrue(objectFile.getModuleInstrs().stream().anyMatch(x -> x.getOpCode() == OpCode.CALL3));
+
+      //The unused return value of add3(1, 2, 3) is popped
+      assertTrue(objectFile.getModuleInstrs().stream().anyMatch(x -> x.getOpCode() == OpCode.POP));
+    } catch (ParseException e) {
+      fail(e);
+    }
+  }
+
+  @Test
+  public void testLocalVarCount() {
+    try {
+      final Module module = compileModule("stackDepth.shr");
+      final IRCompiler compiler = new IRCompiler();
+      CompilerResult result = compiler.compileModule(module);
+
+      if (!result.isSuccessful()) {
+        fail(result.getValidationExceptions().stream()
+                                             .map(x -> x.getMessage())
+                                             .collect(Collectors.joining(System.lineSeparator())));
+      }
+
+      final CodeObject add3 = result.getObjectFile().getPool().getMembers().stream()
+                                                             .filter(x -> x instanceof CodeObject)
+                                                             .map(x -> (CodeObject) x)
+                                                             .findFirst()
+                                                             .get();
+
+      //add3 itself, self, a, b and c
+      assertEquals(5, add3.getLocalVarCount());
+    } catch (ParseException e) {
+      fail(e);
+    }
+  }
+
   public Module compileModule(String fileName) throws ParseException {
     Reader src = new InputStreamReader(IRCompileTest.class.getResourceAsStream("/"+fileName));
 